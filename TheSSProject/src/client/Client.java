@@ -6,7 +6,10 @@ import java.net.Socket;
 import java.net.UnknownHostException;
 
 import exc.InvalidPortException;
+import model.AlphaBetaStrategy;
 import model.Board;
+import model.BookStrategy;
+import model.MonteCarloStrategy;
 import model.RandomStrategy;
 import model.SmartStrategy;
 import model.Strategy;
@@ -192,6 +195,14 @@ public class Client {
 			case "Trams":
 				strategy = new SmartStrategy();
 				break;
+			case "Alphi":
+				strategy = new BookStrategy(new AlphaBetaStrategy(
+						AlphaBetaStrategy.DEFAULT_TIME_BUDGET, 
+						Runtime.getRuntime().availableProcessors()));
+				break;
+			case "Monty":
+				strategy = new MonteCarloStrategy();
+				break;
 			default:
 				//theoretically never called.
 				strategy = new RandomStrategy();
@@ -21,6 +21,7 @@ import model.SmartStrategy;
 import model.Strategy;
 import model.TowerCoordinates;
 import server.Protocol;
+import server.ProtocolTokenizer;
 import view.ClientTUI;
 import view.MessageType;
 
@@ -56,6 +57,8 @@ public class ClientCommunication implements Observer {
 	public static final int UNLIMITED = 0; 
 	public static final int FALSE = 0;
 	public static final int TRUE = 1;
+	private static final String FALSE_STRING = String.valueOf(FALSE);
+	private static final String TRUE_STRING = String.valueOf(TRUE);
 	
 	// < -------- Server to Client messages ----------->
 	public static final String SERVERCAPABILITIES = Protocol.Server.SERVERCAPABILITIES;
@@ -78,6 +81,14 @@ public class ClientCommunication implements Observer {
 	public static final String SENDMESSAGE = Protocol.Client.SENDMESSAGE;
 	public static final String REQUESTLEADERBOARD = Protocol.Client.REQUESTLEADERBOARD;
 	
+	// Commands handled by react
+	private static final String[] COMMANDS = {SERVERCAPABILITIES, ASSIGNID, STARTGAME, 
+		TURNOFPLAYER, NOTIFYMOVE, NOTIFYEND, ERROR};
+	
+	// <<------- Tokenizers reused for every message ---------->>
+	private final ProtocolTokenizer tokens = new ProtocolTokenizer(ProtocolTokenizer.SPACE);
+	private final ProtocolTokenizer fields = new ProtocolTokenizer(ProtocolTokenizer.PIPE);
+	
 	// < --------- Constructor --------------->
 	/**
 	 * Creates a new Client Communication thread.
@@ -157,13 +168,13 @@ public class ClientCommunication implements Observer {
 	 */
 	//@ requires input != null;
 	public void react(String input)  {
-		String[] message = input.split(" ");
+		ProtocolTokenizer message = tokens.reset(input);
 		view.print("Reacting to this message: " + input);
-		if (message.length >= 1) {
-			switch (message[0]) {
+		if (message.count() >= 1) {
+			switch (message.command(COMMANDS)) {
 				case SERVERCAPABILITIES:
 					try {
-						if (message.length == 8) {
+						if (message.count() == 8) {
 							view.valid(MessageType.GOT_SERVER_CAP);
 							String answer = serverCapabilities(message);
 							write(answer);
@@ -176,8 +187,8 @@ public class ClientCommunication implements Observer {
 					break;
 				case ASSIGNID:
 					try {
-						if (message.length == 2) {
-							int id = Integer.parseInt(message[1]);
+						if (message.count() == 2) {
+							int id = message.parseInt(1);
 							makeMe(name, strategy, id);
 							view.valid(MessageType.GOT_ID);
 							view.print("Your ID is: " + id);
@@ -189,12 +200,10 @@ public class ClientCommunication implements Observer {
 					break;
 				case STARTGAME:
 					// There have to be at least 2 players
-					if (message.length >= 4) {
+					if (message.count() >= 4) {
 						try {
-							makeBoard(message[1]);
-							String[] playersString = new String[message.length - 2];
-							System.arraycopy(message, 2, playersString, 0, message.length - 2);
-							makePlayers(playersString);
+							makeBoard(input, message.start(1), message.end(1));
+							makePlayers(message, 2);
 							if (me != null) {
 								playing = true;
 							} else {
@@ -214,9 +223,9 @@ public class ClientCommunication implements Observer {
 					break;
 				case TURNOFPLAYER:
 					// Should not be received if no game is on.
-					if (playing && message.length == 2) {
+					if (playing && message.count() == 2) {
 						try {
-							int current = Integer.parseInt(message[1]);
+							int current = message.parseInt(1);
 							if (current == me.playerID) {
 								TowerCoordinates play = determineMove();
 								if (play != null) {
@@ -244,12 +253,12 @@ public class ClientCommunication implements Observer {
 					break;
 				case NOTIFYMOVE:
 					// Should not be received if no game is on.
-					if (playing && message.length == 4) {
+					if (playing && message.count() == 4) {
 						try {
-							int id = Integer.parseInt(message[1]);
+							int id = message.parseInt(1);
 							//Workaround for added protocol coordinate origin definition
-							int xc = Integer.parseInt(message[2]) + 1;
-							int yc = Integer.parseInt(message[3]) + 1;
+							int xc = message.parseInt(2) + 1;
+							int yc = message.parseInt(3) + 1;
 							makeMove(xc, yc, id);
 							view.valid(MessageType.MOVE_MADE);
 						} catch (NumberFormatException e) {
@@ -263,13 +272,13 @@ public class ClientCommunication implements Observer {
 					break;
 				case NOTIFYEND:
 					// Should not be received if no game is on.
-					if (playing && message.length >= 2) {
+					if (playing && message.count() >= 2) {
 						try {
-							int reason = Integer.parseInt(message[1]);
+							int reason = message.parseInt(1);
 							int id = -1;
 							String result = "";
-							if (reason == 1 && message.length == 3) {
-								id = Integer.parseInt(message[2]);
+							if (reason == 1 && message.count() == 3) {
+								id = message.parseInt(2);
 								result = determineEnd(reason, id);
 							} else {
 								result = determineEnd(reason);
@@ -287,8 +296,8 @@ public class ClientCommunication implements Observer {
 					}
 					break;
 				case ERROR:
-					if (message.length == 2) {
-						String type = message[1];
+					if (message.count() == 2) {
+						String type = message.token(1);
 						String error = getError(type);
 						view.print(error);
 					}
@@ -354,6 +363,24 @@ public class ClientCommunication implements Observer {
 		return sendClientCapabilities(amount, room, maxX, maxY, maxZ, maxWin, chat);
 	}
 	
+	/**
+	 * Interprets the serverCapabilities message of the server, split by a tokenizer.
+	 * @param message Tokens of the message by the server, sending the capabilities.
+	 * @return answer of the client.
+	 * @throws InvalidSyntaxException thrown when the syntax of the protocol does not hold.
+	 */
+	//@ requires message.count() == 8;
+	private String serverCapabilities(ProtocolTokenizer message) throws InvalidSyntaxException {
+		int amount = message.parseInt(1);
+		boolean room = giveBoolean(message, 2);
+		int maxX = message.parseInt(3);
+		int maxY = message.parseInt(4);
+		int maxZ = message.parseInt(5);
+		int maxWin = message.parseInt(6);
+		boolean chat = giveBoolean(message, 7);
+		return sendClientCapabilities(amount, room, maxX, maxY, maxZ, maxWin, chat);
+	}
+	
 	/**
 	 * Creates a sending the client's capabilities message according to the protocol.
 	 * @param amountPlayers Amount of players the server can deal wwith in one game.
@@ -460,18 +487,35 @@ public class ClientCommunication implements Observer {
 	//@ requires dimensions !=null;
 	public Board makeBoard(String dimensions) throws InvalidSyntaxException, 
 		IllegalBoardConstructorArgumentsException, NumberFormatException {
-		String[] dims = dimensions.split("\\|");
-		if (dims.length >= 4) {
-			int xs = Integer.parseInt(dims[0]);
-			int ys = Integer.parseInt(dims[1]);
-			int zs = Integer.parseInt(dims[2]);
-			int wins = Integer.parseInt(dims[3]);
+		return makeBoard(dimensions, 0, dimensions.length());
+	}
+	
+	/**
+	 * Creates a board from the dimensions in a part of a message, see makeBoard(String).
+	 * @param message Message containing the dimensions.
+	 * @param start Index of the first character of the dimensions.
+	 * @param end Index after the last character of the dimensions.
+	 * @return Copy of the board the client should play on.
+	 * @throws InvalidSyntaxException in case not all the dimensions are indicated in the string.
+	 * @throws IllegalBoardConstructorArgumentsException in case the server 
+	 * sends invalid dimensions to create a board.
+	 * @throws NumberFormatException in case the dimensions are not represented as integer.
+	 */
+	//@ requires message != null && 0 <= start && start <= end && end <= message.length();
+	private Board makeBoard(String message, int start, int end) throws InvalidSyntaxException, 
+		IllegalBoardConstructorArgumentsException, NumberFormatException {
+		ProtocolTokenizer dims = fields.reset(message, start, end);
+		if (dims.count() >= 4) {
+			int xs = dims.parseInt(0);
+			int ys = dims.parseInt(1);
+			int zs = dims.parseInt(2);
+			int wins = dims.parseInt(3);
 			board = new Board(xs, ys, zs, wins);
 			// This is the observer in case the board makes a move
 			board.addObserver(this);
 			return board.deepCopy();
 		} else {
-			throw new InvalidSyntaxException(dimensions, " all the dimensions of the board");
+			throw new InvalidSyntaxException(dims.toString(), " all the dimensions of the board");
 		}
 	}
 	
@@ -487,22 +531,53 @@ public class ClientCommunication implements Observer {
 	//@ requires input !=null;
 	public List<Player> makePlayers(String[] input) throws InvalidSyntaxException, 
 		NumberFormatException {
-		List<Player> result = new ArrayList<Player>();
+		List<Player> result = new ArrayList<Player>(input.length);
 		for (int i = 0; i < input.length; i++) {
-			String[] details = input[i].split("\\|");
-			if (details.length >= 2) {
-				int id = Integer.parseInt(details[0]);
-				String playerIName = details[1];
-				//We do not use the colours for our implementation.
-				Player playerI = new Player(playerIName, id);
-				result.add(playerI);
-			} else {
-				throw new InvalidSyntaxException(input[i], "player");
-			}
+			result.add(makePlayer(fields.reset(input[i])));
+		}
+		players.addAll(result);
+		return result;
+	}
+	
+	/**
+	 * Creates the players described by the tokens of a message from the given token on, 
+	 * see makePlayers(String[]).
+	 * @param message Tokens of the message, every token from first on represents one player.
+	 * @param first Index of the token of the first player.
+	 * @return List of all the players described in the message.
+	 * @throws InvalidSyntaxException in case not all the information for a player are present.
+	 * @throws NumberFormatException in case the player id is not an integer.
+	 */
+	//@ requires message != null && first >= 0;
+	private List<Player> makePlayers(ProtocolTokenizer message, int first) 
+		throws InvalidSyntaxException, NumberFormatException {
+		List<Player> result = new ArrayList<Player>(Math.max(0, message.count() - first));
+		for (int i = first; i < message.count(); i++) {
+			result.add(makePlayer(fields.reset(message.getMessage(), message.start(i), 
+					message.end(i))));
 		}
 		players.addAll(result);
 		return result;
 	}
+	
+	/**
+	 * Creates a player from the details of one player.
+	 * @param details Details of the player, split at "|": ID, name and colour.
+	 * @return The player.
+	 * @throws InvalidSyntaxException in case not all the information for the player are present.
+	 * @throws NumberFormatException in case the player id is not an integer.
+	 */
+	//@ requires details != null;
+	private Player makePlayer(ProtocolTokenizer details) throws InvalidSyntaxException, 
+		NumberFormatException {
+		if (details.count() >= 2) {
+			int id = details.parseInt(0);
+			//We do not use the colours for our implementation.
+			return new Player(details.token(1), id);
+		} else {
+			throw new InvalidSyntaxException(details.toString(), "player");
+		}
+	}
 
 	/**
 	 * Determine boolean value out of a String.
@@ -523,6 +598,25 @@ public class ClientCommunication implements Observer {
 
 	}
 	
+	/**
+	 * Determine boolean value out of a token of a message.
+	 * @param message Tokens of the message.
+	 * @param token Index of the token representing the boolean.
+	 * @return the boolean the token represents.
+	 * @throws InvalidSyntaxException in case the token does not equal TRUE nor FALSE.
+	 */
+	//@ requires message != null && token >= 0 && token < message.count();
+	private boolean giveBoolean(ProtocolTokenizer message, int token) 
+		throws InvalidSyntaxException {
+		if (message.equals(token, TRUE_STRING)) {
+			return true;
+		} else if (message.equals(token, FALSE_STRING)) {
+			return false;
+		} else { 
+			throw new InvalidSyntaxException(message.token(token), "boolean");
+		} 
+	}
+	
 	//<<----------- Game ------------ >>
 	
 	/** 
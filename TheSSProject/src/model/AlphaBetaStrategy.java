@@ -0,0 +1,591 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AlphaBetaStrategy implements Strategy {
+
+	// <------ Constants ------>
+
+	public static final long DEFAULT_TIME_BUDGET = 1000;
+	public static final int MAX_DEPTH = 64;
+	public static final int WIN_SCORE = 1 << 28;
+
+	private static final int NODES_PER_CLOCK_CHECK = 128;
+	private static final int NO_MOVE = -1;
+	private static final int MAX_WEIGHT_SHIFT = 18;
+
+	// <------ Instance variables ------>
+
+	private final long timeBudget;
+	private final int threads;
+	private final AtomicLong positions = new AtomicLong();
+	private TranspositionTable table;
+	// Tower order by distance to the center, cached for the last geometry seen
+	private volatile int[] centerOrder;
+	private volatile int centerOrderXDim;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates an alpha-beta strategy with the default time budget per move.
+	 */
+	public AlphaBetaStrategy() {
+		this(DEFAULT_TIME_BUDGET);
+	}
+
+	/**
+	 * Creates an alpha-beta strategy with the given time budget per move.
+	 * @param timeBudget Time in milliseconds this strategy may search for a move
+	 */
+	//@ requires timeBudget > 0;
+	public AlphaBetaStrategy(long timeBudget) {
+		this.timeBudget = timeBudget;
+		this.threads = 1;
+	}
+
+	/**
+	 * Creates an alpha-beta strategy with the given time budget per move, searching with several
+	 * threads that share a transposition table of the default size.
+	 * @param timeBudget Time in milliseconds this strategy may search for a move
+	 * @param threads Number of threads to search with, including the calling thread
+	 */
+	//@ requires timeBudget > 0 && threads > 0;
+	public AlphaBetaStrategy(long timeBudget, int threads) {
+		this.timeBudget = timeBudget;
+		this.threads = threads;
+	}
+
+	/**
+	 * Creates an alpha-beta strategy with the given time budget per move, storing its results in
+	 * the given transposition table, which may be shared with other strategies.
+	 * @param timeBudget Time in milliseconds this strategy may search for a move
+	 * @param table Transposition table to use
+	 */
+	//@ requires timeBudget > 0 && table != null;
+	public AlphaBetaStrategy(long timeBudget, TranspositionTable table) {
+		this(timeBudget, table, 1);
+	}
+
+	/**
+	 * Creates an alpha-beta strategy searching with several threads, which share the given
+	 * transposition table. All threads search the whole tree with their own move order, finding
+	 * positions searched by the other threads in the table.
+	 * @param timeBudget Time in milliseconds this strategy may search for a move
+	 * @param table Transposition table to use
+	 * @param threads Number of threads to search with, including the calling thread
+	 */
+	//@ requires timeBudget > 0 && table != null && threads > 0;
+	public AlphaBetaStrategy(long timeBudget, TranspositionTable table, int threads) {
+		this.timeBudget = timeBudget;
+		this.table = table;
+		this.threads = threads;
+	}
+
+	// <------ Queries ------>
+
+	/**
+	 * Get the name of the strategy.
+	 * @return name of the strategy.
+	 */
+	@Override
+	public String getName() {
+		return "Alphi";
+	}
+
+	/**
+	 * Returns the time budget per move of this strategy.
+	 * @return Time in milliseconds this strategy may search for a move
+	 */
+	/*@ pure @*/ public long getTimeBudget() {
+		return timeBudget;
+	}
+
+	/**
+	 * Returns the number of threads this strategy searches with.
+	 * @return Number of threads, including the calling thread
+	 */
+	/*@ pure @*/ public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Returns the number of positions searched by all threads for all moves so far.
+	 * @return Number of positions searched
+	 */
+	@Override
+	public long getPositionsSearched() {
+		return positions.get();
+	}
+
+	/**
+	 * Determines the next move by an iterative deepening alpha-beta search on a search copy of
+	 * the board, returning the best move of the deepest search finished within the time budget.
+	 * Winning moves and moves blocking a win of the opponent are searched first, then the
+	 * remaining moves from the center of the board outwards, trying only one of the moves that
+	 * symmetries of the position map onto each other. Positions are evaluated by the open
+	 * lines of both players, so the search is only as strong as the threat counters of the board
+	 * allow; without them it still finds forced wins and blocks. Results are kept in a
+	 * transposition table, so positions reached through another move order or searched for an
+	 * earlier move are not searched again. Searching with more than one thread runs helper
+	 * searches on the common fork-join pool until the calling thread has finished, the move of
+	 * the search that got deepest is returned.
+	 * @param board Board the game is played on.
+	 * @param id player ID of the player using this strategy
+	 * @return the coordinates of the next move following this strategy
+	 */
+	//@ requires board != null && !board.isFull();
+	//@ ensures board.isValidMove(\result.getX(),\result.getY());
+	@Override
+	public TowerCoordinates determineMove(Board board, int id) {
+		return determineMove(board, id, new Deadline(timeBudget));
+	}
+
+	/**
+	 * Determines the next move like <code>determineMove(Board, int)</code>, searching until the
+	 * time budget is used up or the deadline passes, whichever comes first. If the deadline is
+	 * cancelled the best move of the deepest search finished so far is returned at once.
+	 * @param board Board the game is played on.
+	 * @param id player ID of the player using this strategy
+	 * @param deadline Deadline for the move
+	 * @return the coordinates of the next move following this strategy
+	 */
+	//@ requires board != null && !board.isFull() && deadline != null;
+	//@ ensures board.isValidMove(\result.getX(),\result.getY());
+	@Override
+	public TowerCoordinates determineMove(Board board, int id, Deadline deadline) {
+		TranspositionTable searchTable = getTable();
+		searchTable.newSearch();
+		int[] order = getCenterOrder(board);
+		// Cancelled when the calling thread has finished, to stop the helpers
+		Deadline stop = deadline.within(timeBudget);
+		Search[] searches = new Search[threads];
+		List<Future<Integer>> helpers = new ArrayList<Future<Integer>>(threads);
+		helpers.add(null);
+		for (int i = 1; i < threads; i++) {
+			searches[i] = new Search(board.searchCopy(), id, order, searchTable, stop, i);
+			helpers.add(ForkJoinPool.commonPool().submit(searches[i]));
+		}
+		searches[0] = new Search(board.searchCopy(), id, order, searchTable, stop, 0);
+		Search best = searches[0];
+		best.run();
+		stop.cancel();
+		positions.addAndGet(best.nodes);
+		for (int i = 1; i < threads; i++) {
+			// A helper still queued in a busy pool is skipped rather than waited for
+			if (searches[i].claim()) {
+				helpers.get(i).cancel(false);
+				continue;
+			}
+			try {
+				helpers.get(i).get();
+				positions.addAndGet(searches[i].nodes);
+				if (searches[i].completedDepth > best.completedDepth) {
+					best = searches[i];
+				}
+			} catch (InterruptedException | ExecutionException e) {
+				// The result of this helper is lost, the other searches still count
+			}
+		}
+		return board.getTowerCoordinates(best.bestMove);
+	}
+
+	/**
+	 * Returns the transposition table of this strategy, creating a table of the default size if
+	 * none was given.
+	 * @return Transposition table
+	 */
+	private synchronized TranspositionTable getTable() {
+		if (table == null) {
+			table = new TranspositionTable();
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the indices of all towers of the board, sorted by their distance to the center.
+	 * @param board A board
+	 * @return Tower indices, center first
+	 */
+	private int[] getCenterOrder(Board board) {
+		int[] order = centerOrder;
+		if (order != null && order.length == board.xDim * board.yDim
+				&& centerOrderXDim == board.xDim) {
+			return order;
+		}
+		long[] keys = new long[board.xDim * board.yDim];
+		for (int i = 0; i < keys.length; i++) {
+			long dx = 2 * (i % board.xDim) + 1 - board.xDim;
+			long dy = 2 * (i / board.xDim) + 1 - board.yDim;
+			keys[i] = ((dx * dx + dy * dy) << 32) | i;
+		}
+		Arrays.sort(keys);
+		order = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			order[i] = (int) keys[i];
+		}
+		centerOrder = order;
+		centerOrderXDim = board.xDim;
+		return order;
+	}
+
+	/**
+	 * State of a single search for a move, so the strategy itself can be shared.
+	 */
+	private static class Search implements Callable<Integer> {
+		private final Board board;
+		private final int me;
+		private final int opponent;
+		private final int[] centerOrder;
+		private final TranspositionTable table;
+		private final Deadline deadline;
+		// Number of the helper, 0 for the search on the calling thread
+		private final int helper;
+		private final int towers;
+		private final int[] weights;
+		// Move lists and killer moves per ply, created when the search first reaches a ply
+		private final int[][] moveLists;
+		private final int[][] killers;
+		private long nodes;
+		private boolean aborted;
+		// Set by generateMoves when the player to move has to win or block at once
+		private boolean isForced;
+		private int bestMove;
+		private int completedDepth;
+		// Set by the first of the helper task and the caller, the task only runs if it is first
+		private final AtomicBoolean claimed = new AtomicBoolean();
+
+		/**
+		 * Creates the state of a search.
+		 * @param board Search copy of the board
+		 * @param me ID of the player to find a move for
+		 * @param centerOrder Tower indices sorted by distance to the center
+		 * @param table Transposition table to use
+		 * @param deadline Deadline at which the search has to stop
+		 * @param helper Number of the helper search, 0 for the search on the calling thread
+		 */
+		Search(Board board, int me, int[] centerOrder, TranspositionTable table,
+				Deadline deadline, int helper) {
+			this.board = board;
+			this.me = me;
+			this.opponent = findOpponent(board, me);
+			this.centerOrder = centerOrder;
+			this.table = table;
+			this.deadline = deadline;
+			this.helper = helper;
+			this.towers = board.xDim * board.yDim;
+			this.weights = new int[board.winningLength];
+			for (int k = 1; k < board.winningLength; k++) {
+				weights[k] = 1 << Math.min(MAX_WEIGHT_SHIFT, 3 * (k - 1));
+			}
+			this.moveLists = new int[MAX_DEPTH + 1][];
+			this.killers = new int[MAX_DEPTH + 1][];
+		}
+
+		@Override
+		public Integer call() {
+			if (!claim()) {
+				return NO_MOVE;
+			}
+			return run();
+		}
+
+		/**
+		 * Claims this helper search, either to run it or to skip it.
+		 * @return Whether this call claimed the search, false if it was claimed before
+		 */
+		boolean claim() {
+			return claimed.compareAndSet(false, true);
+		}
+
+		/**
+		 * Runs the iterative deepening search. Helper searches start at different depths and
+		 * with a different first move, so they work on other parts of the tree.
+		 * @return Tower index of the best move found
+		 */
+		int run() {
+			int[] rootMoves = movesAt(0);
+			int count = generateMoves(0, me, opponent, NO_MOVE);
+			int best = rootMoves[0];
+			bestMove = best;
+			int maxDepth = Math.min(MAX_DEPTH, board.getRemainingMoves());
+			if (count == 1 || isForced) {
+				completedDepth = maxDepth;
+				return best;
+			}
+			int symmetries = board.getSymmetries();
+			if (symmetries != 1) {
+				// Moves that a symmetry of the position maps onto each other score the same
+				int distinct = 0;
+				for (int i = 0; i < count; i++) {
+					if (board.isDistinctMove(rootMoves[i], symmetries)) {
+						rootMoves[distinct] = rootMoves[i];
+						distinct++;
+					}
+				}
+				count = distinct;
+			}
+			if (helper > 0) {
+				moveToFront(rootMoves, count, rootMoves[helper % count]);
+			}
+			aborted = deadline.isExpired();
+			for (int depth = 1 + helper % 2; depth <= maxDepth && !aborted; depth++) {
+				int alpha = -WIN_SCORE - 1;
+				int iterationBest = NO_MOVE;
+				for (int i = 0; i < count && !aborted; i++) {
+					int tower = rootMoves[i];
+					board.applyMove(tower, me);
+					int score = -negamax(depth - 1, 1, -WIN_SCORE - 1, -alpha, opponent, me);
+					board.undoMove();
+					if (!aborted && score > alpha) {
+						alpha = score;
+						iterationBest = tower;
+					}
+				}
+				if (!aborted && iterationBest != NO_MOVE) {
+					best = iterationBest;
+					bestMove = best;
+					completedDepth = depth;
+					moveToFront(rootMoves, count, best);
+					if (alpha >= WIN_SCORE - MAX_DEPTH || alpha <= -WIN_SCORE + MAX_DEPTH) {
+						// Result is decided, searching deeper does not change it
+						break;
+					}
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Negamax search with alpha-beta pruning, the last move was made by
+		 * <code>other</code>.
+		 * @param depth Remaining depth
+		 * @param ply Distance to the root
+		 * @param alpha Lower bound
+		 * @param beta Upper bound
+		 * @param player Player to move
+		 * @param other Other player
+		 * @return Score of the position for <code>player</code>
+		 */
+		private int negamax(int depth, int ply, int alpha, int beta, int player, int other) {
+			nodes++;
+			if (nodes % NODES_PER_CLOCK_CHECK == 0 && deadline.isExpired()) {
+				aborted = true;
+			}
+			if (aborted) {
+				return 0;
+			} else if (board.lastMoveHasWon()) {
+				return -(WIN_SCORE - ply);
+			} else if (board.isFull()) {
+				return 0;
+			} else if (depth == 0) {
+				return evaluate(player, other);
+			}
+			long key = board.getHash();
+			long entry = table.probe(key);
+			int tableMove = NO_MOVE;
+			if (entry != TranspositionTable.MISS) {
+				tableMove = TranspositionTable.getMove(entry);
+				if (TranspositionTable.getDepth(entry) >= depth) {
+					int score = fromTable(TranspositionTable.getScore(entry), ply);
+					int flag = TranspositionTable.getFlag(entry);
+					if (flag == TranspositionTable.EXACT
+							|| (flag == TranspositionTable.LOWER_BOUND && score >= beta)
+							|| (flag == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+						return score;
+					}
+				}
+			}
+			int count = generateMoves(ply, player, other, tableMove);
+			if (count == 0) {
+				return evaluate(player, other);
+			}
+			int[] moves = moveLists[ply];
+			int originalAlpha = alpha;
+			int bestMove = NO_MOVE;
+			for (int i = 0; i < count; i++) {
+				int tower = moves[i];
+				board.applyMove(tower, player);
+				int score = -negamax(depth - 1, ply + 1, -beta, -alpha, other, player);
+				board.undoMove();
+				if (aborted) {
+					return 0;
+				}
+				if (score > alpha) {
+					alpha = score;
+					bestMove = tower;
+					if (alpha >= beta) {
+						storeKiller(ply, tower);
+						break;
+					}
+				}
+			}
+			int flag = alpha >= beta ? TranspositionTable.LOWER_BOUND
+					: alpha > originalAlpha ? TranspositionTable.EXACT
+					: TranspositionTable.UPPER_BOUND;
+			table.store(key, depth, flag, toTable(alpha, ply), bestMove);
+			return alpha;
+		}
+
+		/**
+		 * Fills the move list of a ply with the moves to search, in search order. A winning
+		 * move is the only move returned; otherwise the moves blocking a win of the other
+		 * player, if any, are the only moves returned.
+		 * @param ply Distance to the root
+		 * @param player Player to move
+		 * @param other Other player
+		 * @param tableMove Best move stored in the transposition table, searched first
+		 * @return Number of moves in the move list
+		 */
+		private int generateMoves(int ply, int player, int other, int tableMove) {
+			int[] moves = movesAt(ply);
+			int count = 0;
+			int blocks = 0;
+			isForced = false;
+			for (int tower : centerOrder) {
+				if (board.isAvailableTower(tower)) {
+					if (board.isWinningMove(tower, player)) {
+						moves[0] = tower;
+						isForced = true;
+						return 1;
+					} else if (board.isWinningMove(tower, other)) {
+						// Blocking moves go in front, they are the only candidates
+						moves[count] = moves[blocks];
+						moves[blocks] = tower;
+						blocks++;
+					} else {
+						moves[count] = tower;
+					}
+					count++;
+				}
+			}
+			if (blocks > 0) {
+				isForced = true;
+				return blocks;
+			}
+			int[] killer = killers[ply];
+			if (killer != null) {
+				for (int k = killer.length - 1; k >= 0; k--) {
+					moveToFront(moves, count, killer[k]);
+				}
+			}
+			if (tableMove != NO_MOVE) {
+				moveToFront(moves, count, tableMove);
+			}
+			return count;
+		}
+
+		/**
+		 * Evaluates a position by the open lines of both players, longer lines weighing more.
+		 * @param player Player to move
+		 * @param other Other player
+		 * @return Score of the position for <code>player</code>
+		 */
+		private int evaluate(int player, int other) {
+			if (!board.tracksThreats()) {
+				return 0;
+			}
+			int score = 0;
+			for (int k = 1; k < board.winningLength; k++) {
+				score += weights[k] * (board.getOpenLineCount(player, k)
+						- board.getOpenLineCount(other, k));
+			}
+			return Math.max(-WIN_SCORE / 2, Math.min(WIN_SCORE / 2, score));
+		}
+
+		/**
+		 * Converts a score to be stored in the transposition table, counting wins and losses
+		 * from the position instead of from the root.
+		 * @param score Score of the search
+		 * @param ply Distance of the position to the root
+		 * @return Score to store
+		 */
+		private static int toTable(int score, int ply) {
+			if (score >= WIN_SCORE - MAX_DEPTH) {
+				return score + ply;
+			} else if (score <= -WIN_SCORE + MAX_DEPTH) {
+				return score - ply;
+			}
+			return score;
+		}
+
+		/**
+		 * Converts a score stored in the transposition table back to a score of the search.
+		 * @param score Stored score
+		 * @param ply Distance of the position to the root
+		 * @return Score of the search
+		 */
+		private static int fromTable(int score, int ply) {
+			if (score >= WIN_SCORE - MAX_DEPTH) {
+				return score - ply;
+			} else if (score <= -WIN_SCORE + MAX_DEPTH) {
+				return score + ply;
+			}
+			return score;
+		}
+
+		/**
+		 * Returns the move list of a ply, creating it when needed.
+		 * @param ply Distance to the root
+		 * @return Move list
+		 */
+		private int[] movesAt(int ply) {
+			if (moveLists[ply] == null) {
+				moveLists[ply] = new int[towers];
+			}
+			return moveLists[ply];
+		}
+
+		/**
+		 * Remembers a move that caused a cutoff at a ply.
+		 * @param ply Distance to the root
+		 * @param tower Tower index of the move
+		 */
+		private void storeKiller(int ply, int tower) {
+			if (killers[ply] == null) {
+				killers[ply] = new int[] {tower, tower};
+			} else if (killers[ply][0] != tower) {
+				killers[ply][1] = killers[ply][0];
+				killers[ply][0] = tower;
+			}
+		}
+
+		/**
+		 * Moves a tower to the front of a move list, keeping the order of the other moves.
+		 * @param moves Move list
+		 * @param count Number of moves in the list
+		 * @param tower Tower index to move to the front, ignored if not in the list
+		 */
+		private static void moveToFront(int[] moves, int count, int tower) {
+			for (int i = 0; i < count; i++) {
+				if (moves[i] == tower) {
+					System.arraycopy(moves, 0, moves, 1, i);
+					moves[0] = tower;
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Determines the ID of the opponent, any other ID if the opponent has not moved yet.
+		 * @param board A board
+		 * @param me ID of the player to find a move for
+		 * @return ID of the opponent
+		 */
+		private static int findOpponent(Board board, int me) {
+			for (int i = 0; i < board.getPlayerCount(); i++) {
+				if (board.getPlayerID(i) != me) {
+					return board.getPlayerID(i);
+				}
+			}
+			return me + 1;
+		}
+	}
+}
@@ -1,9 +1,12 @@
 package model;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Observable;
+import java.util.concurrent.ConcurrentHashMap;
 
 import exc.CoordinatesOutOfBoundsException;
 import exc.IllegalBoardConstructorArgumentsException;
@@ -20,13 +23,66 @@ public class Board extends Observable {
 	public static final int DEFAULT_WIN = 4;
 	public static final int UNLIMITED_Z = 0;
 	
+	private static final byte EMPTY = 0;
+	private static final int MAX_SLOTS = Byte.MAX_VALUE;
+	private static final int LEVEL_CHUNK = 8;
+	private static final int INITIAL_MOVES = 64;
+	// Pieces beyond this number don't raise the weight of a line in getCellPotential
+	private static final int MAX_POTENTIAL_PIECES = 7;
+	// Linearly independent direction vectors, see cellHasWon(int, int, int, int)
+	private static final int[][] DIRECTIONS = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}, {1, 1, 0}, 
+		{1, -1, 0}, {1, 0, 1}, {1, 0, -1}, {0, 1, 1}, {0, 1, -1}, {1, 1, 1}, {1, 1, -1}, 
+		{1, -1, 1}, {1, -1, -1}};
+	private static final int NO_MOVE = -1;
+	// Threat counters take an int per line and player, so they are only kept up to this many
+	private static final int MAX_COUNTED_LINES = 1 << 13;
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	private static final int REFLECT_X = 1;
+	private static final int REFLECT_Y = 2;
+	private static final int SWAP_XY = 4;
+	private static final int RECTANGLE_SYMMETRIES = 4;
+	private static final int SQUARE_SYMMETRIES = 8;
+	private static final Map<Long, TowerCoordinates[]> COORDINATES = 
+			new ConcurrentHashMap<Long, TowerCoordinates[]>();
+	
 	// <------ INSTANCE VARIABLES ------>
 	
 	public final int xDim;
 	public final int yDim;
 	public final int zDim;
 	public final int winningLength;
-	private List<List<Integer>> boardData; 
+	private final int towers;
+	private final WinningLines lines;
+	private final TowerCoordinates[] coordinates;
+	// Slot + 1 of the owners of all cells, EMPTY if empty, stored level by level, see 
+	// cellIndex(int, int, int)
+	private byte[] cells;
+	private int[] heights;
+	private int levels;
+	// Number of towers holding zDim pieces, always 0 for unlimited height
+	private int fullTowers;
+	// Tower indices of all moves made so far, in order
+	private int[] moves;
+	private int moveCount;
+	// Search boards used by computer players don't notify observers
+	private boolean notifying = true;
+	// Number of the first move that completed a winning line, NO_MOVE if none
+	private int winningMove;
+	private int winner;
+	// Players in order of their first piece, their slot indexes the threat counters
+	private int[] slotIDs;
+	private int slots;
+	// Zobrist hash of the position, XOR of the keys of all pieces and of the geometry
+	private long hash;
+	// Threat counters, only kept for at most MAX_COUNTED_LINES lines, null otherwise: pieces per 
+	// slot and in total on each line, and per slot the number of lines holding only its pieces, 
+	// by number of pieces
+	private int[][] lineCounts;
+	private int[] lineTotals;
+	private int[][] openLines;
+	// Bit masks of the cells holding pieces of each slot, lines.maskWords longs per slot, only 
+	// kept for geometries of at most WinningLines.MAX_MASK_CELLS cells, null otherwise
+	private long[] pieceMasks;
 	
 	
 	// <------ CONSTRUCTORS ------>
@@ -56,6 +112,9 @@ public class Board extends Observable {
 		this.yDim = yDim;
 		this.zDim = zDim;
 		this.winningLength = winningLength;
+		this.towers = xDim * yDim;
+		this.lines = WinningLines.forGeometry(xDim, yDim, zDim, winningLength);
+		this.coordinates = coordinatesOf(xDim, yDim);
 		reset();
 	}
 	
@@ -67,9 +126,52 @@ public class Board extends Observable {
 		this.yDim = DEFAULT_DIM;
 		this.zDim = DEFAULT_DIM;
 		this.winningLength = DEFAULT_WIN;
+		this.towers = xDim * yDim;
+		this.lines = WinningLines.forGeometry(xDim, yDim, zDim, winningLength);
+		this.coordinates = coordinatesOf(xDim, yDim);
 		reset();
 	}
 	
+	/** 
+	 * Create a copy of the given board, without validating its dimensions again.
+	 * @param board Board to copy
+	 * @param notifying Whether the copy notifies its observers of moves
+	 */
+	//@ requires board != null;
+	private Board(Board board, boolean notifying) {
+		this.xDim = board.xDim;
+		this.yDim = board.yDim;
+		this.zDim = board.zDim;
+		this.winningLength = board.winningLength;
+		this.towers = board.towers;
+		this.lines = board.lines;
+		this.coordinates = board.coordinates;
+		this.cells = board.cells.clone();
+		this.heights = board.heights.clone();
+		this.levels = board.levels;
+		this.fullTowers = board.fullTowers;
+		this.moves = board.moves.clone();
+		this.moveCount = board.moveCount;
+		this.notifying = notifying;
+		this.winningMove = board.winningMove;
+		this.winner = board.winner;
+		this.slotIDs = board.slotIDs.clone();
+		this.slots = board.slots;
+		this.hash = board.hash;
+		if (board.lineTotals != null) {
+			this.lineTotals = board.lineTotals.clone();
+			this.lineCounts = new int[slotIDs.length][];
+			this.openLines = new int[slotIDs.length][];
+			for (int slot = 0; slot < slots; slot++) {
+				this.lineCounts[slot] = board.lineCounts[slot].clone();
+				this.openLines[slot] = board.openLines[slot].clone();
+			}
+		}
+		if (board.pieceMasks != null) {
+			this.pieceMasks = board.pieceMasks.clone();
+		}
+	}
+	
 	
 	// <------ QUERIES ------>	
 	
@@ -89,15 +191,7 @@ public class Board extends Observable {
 		if (zDim == UNLIMITED_Z) {
 			return isValidTower(x, y);
 		} else {
-			try {
-				if (isValidTower(x, y) && getTowerHeight(x, y) < zDim) {
-					return true;	
-				} else {
-					return false;
-				}
-			} catch (CoordinatesOutOfBoundsException e) {
-				return false;
-			}
+			return isValidTower(x, y) && heights[towerIndex(x, y)] < zDim;
 		}
 	}
 	
@@ -160,33 +254,10 @@ public class Board extends Observable {
 	  @ directionHasWon(x, y, z, 1, -1, -1, getCellOwner(x,y,z)); */
 	/*@ pure @*/ public boolean hasWon(int x, int y, int z) throws CoordinatesOutOfBoundsException {
 		Integer owner = getCellOwner(x, y, z);
-		// Linearly independent direction vectors:
-		// (1,0,0) X-direction
-		// (0,1,0) Y-direction
-		// (0,0,1) Z-direction
-		// (1,1,0) X+Y-direction
-		// (1,-1,0) X-Y-direction
-		// (1,0,1) X+Z-direction
-		// (1,0,-1) X-Z-direction
-		// (0,1,1) Y+Z-direction
-		// (0,1,-1) Y-Z-direction
-		// (1,1,1) X+Y+Z-direction
-		// (1,1,-1) X+Y-Z-direction
-		// (1,-1,1) X-Y+Z-direction
-		// (1,-1,-1) X-Y-Z-direction
-		return directionHasWon(x, y, z, 1, 0, 0, owner) || 
-				directionHasWon(x, y, z, 0, 1, 0, owner) || 
-				directionHasWon(x, y, z, 0, 0, 1, owner) || 
-				directionHasWon(x, y, z, 1, 1, 0, owner) ||
-				directionHasWon(x, y, z, 1, -1, 0, owner) || 
-				directionHasWon(x, y, z, 1, 0, 1, owner) ||
-				directionHasWon(x, y, z, 1, 0, -1, owner) || 
-				directionHasWon(x, y, z, 0, 1, 1, owner) ||
-				directionHasWon(x, y, z, 0, 1, -1, owner) || 
-				directionHasWon(x, y, z, 1, 1, 1, owner) ||
-				directionHasWon(x, y, z, 1, 1, -1, owner) || 
-				directionHasWon(x, y, z, 1, -1, 1, owner) ||
-				directionHasWon(x, y, z, 1, -1, -1, owner);
+		if (owner == null) {
+			return false;
+		}
+		return cellHasWon(x, y, z, cells[cellIndex(x, y, z)]);
 	}
 	
 	/** 
@@ -204,25 +275,78 @@ public class Board extends Observable {
 		return hasWon(x, y, getTowerHeight(x, y));
 	}
 	
+	/** 
+	 * Checks whether the piece added by the last move belongs to a winning set.
+	 * @return Piece added by the last move belongs to winning set
+	 */
+	//@ requires getMoveCount() > 0;
+	/*@ pure @*/ public boolean lastMoveHasWon() {
+		int tower = moves[moveCount - 1];
+		int z = heights[tower];
+		return cellHasWon(tower % xDim + 1, tower / xDim + 1, z, cells[tower + (z - 1) * towers]);
+	}
+	
 	/** 
 	 * Checks whether the board is full.
 	 * @return Board is full
 	 */
 	//@ ensures \result == (\forall int x,y,z; isValidCell(x,y,z); !isEmptyCell(x,y,z));
 	/*@ pure @*/ public boolean isFull() {
-		if (zDim == UNLIMITED_Z) { 
-			return false;
-		} else {
-			for (List<Integer> tower : boardData) {
-				if (tower.size() < zDim) {
-					return false;
-				}
-			}
-			return true;
+		return zDim != UNLIMITED_Z && fullTowers == towers;
+	}
+	
+	/** 
+	 * Checks whether the game on this board ended in a draw, i.e. the board is full and nobody 
+	 * has won.
+	 * @return The game is a draw
+	 */
+	//@ ensures \result == (isFull() && !hasWinner());
+	/*@ pure @*/ public boolean isDraw() {
+		return isFull() && winningMove == NO_MOVE;
+	}
+	
+	/** 
+	 * Returns the number of pieces that can still be added to the board.
+	 * @return Number of empty cells, <code>Integer.MAX_VALUE</code> for unlimited height
+	 */
+	//@ ensures zDim != UNLIMITED_Z ==> \result == xDim * yDim * zDim - getMoveCount();
+	/*@ pure @*/ public int getRemainingMoves() {
+		if (zDim == UNLIMITED_Z) {
+			return Integer.MAX_VALUE;
+		}
+		return towers * zDim - moveCount;
+	}
+	
+	/** 
+	 * Returns the number of towers where a piece can be added.
+	 * @return Number of towers that aren't full
+	 */
+	//@ ensures \result == getAvailableTowers().size();
+	/*@ pure @*/ public int getAvailableTowerCount() {
+		return towers - fullTowers;
+	}
+	
+	/** 
+	 * Checks whether a player has completed a winning line on this board.
+	 * @return The board has a winner
+	 */
+	//@ ensures \result == (getWinner() != null);
+	/*@ pure @*/ public boolean hasWinner() {
+		return winningMove != NO_MOVE;
+	}
+	
+	/** 
+	 * Returns the player who completed the first winning line on this board.
+	 * @return ID of the winner, null if no player has won
+	 */
+	/*@ pure nullable @*/ public Integer getWinner() {
+		if (winningMove == NO_MOVE) {
+			return null;
 		}
+		return winner;
 	}
 	
-	// <------ Required for AI ------>
+		// <------ Required for AI ------>
 	
 	/** 
 	 * Returns a <code>List</code> of <code>Coordinates</code> of each tower where a piece can be 
@@ -233,53 +357,442 @@ public class Board extends Observable {
 	  												isValidMove(coord.getX(),coord.getY()); 
 	  @*/
 	/*@ pure @*/ public List<TowerCoordinates> getAvailableTowers() {
-		List<TowerCoordinates> availableTowers = new ArrayList<TowerCoordinates>();
-		List<List<Integer>> allTowers = deepDataCopy();
-		for (int i = 0; i < allTowers.size(); i++) {
-			int x = getTowerCoordinates(i).getX();
-			int y = getTowerCoordinates(i).getY();
-			try {
-				if (getTowerHeight(x, y) < zDim || zDim == Board.UNLIMITED_Z) {
-					availableTowers.add(new TowerCoordinates(x, y));
-				}
-			} catch (CoordinatesOutOfBoundsException e) { 
-				System.err.println("getAvailableTowers method  broken");
-				System.err.println(e.getMessage());
-				return null;
+		List<TowerCoordinates> availableTowers = new ArrayList<TowerCoordinates>(towers);
+		for (int i = 0; i < towers; i++) {
+			if (isAvailableTower(i)) {
+				availableTowers.add(coordinates[i]);
 			}
 		}
 		return availableTowers;
 	}
 	
+	/** 
+	 * Fills the given array with the indices of all towers where a piece can be added, in 
+	 * increasing order, without allocating.
+	 * @param buffer Array to fill, at least <code>xDim * yDim</code> long
+	 * @return Number of available towers, stored at the start of the buffer
+	 */
+	//@ requires buffer.length >= xDim * yDim;
+	//@ ensures (\forall int i; i >= 0 && i < \result; isAvailableTower(buffer[i]));
+	public int getAvailableTowers(int[] buffer) {
+		int count = 0;
+		for (int i = 0; i < towers; i++) {
+			if (isAvailableTower(i)) {
+				buffer[count] = i;
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/** 
+	 * Fills the given bit mask with the towers where a piece can be added: bit 
+	 * <code>i % 64</code> of <code>mask[i / 64]</code> is set if tower <code>i</code> is 
+	 * available.
+	 * @param mask Bit mask to fill, at least <code>(xDim * yDim + 63) / 64</code> long
+	 * @return Number of available towers
+	 */
+	//@ requires mask.length >= (xDim * yDim + 63) / 64;
+	public int getAvailableTowerMask(long[] mask) {
+		int words = (towers + 63) >>> 6;
+		if (zDim == UNLIMITED_Z) {
+			Arrays.fill(mask, 0, words, -1L);
+			if ((towers & 63) != 0) {
+				mask[words - 1] = (1L << (towers & 63)) - 1;
+			}
+			return towers;
+		}
+		Arrays.fill(mask, 0, words, 0L);
+		int count = 0;
+		for (int i = 0; i < towers; i++) {
+			if (heights[i] < zDim) {
+				mask[i >>> 6] |= 1L << i;
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/** 
+	 * Returns the available towers that lead to different positions, i.e. of every set of 
+	 * available towers that symmetries of the current position map onto each other only the 
+	 * tower with the lowest index is returned.
+	 * @return <code>List</code> of <code>Coordinates</code> of available towers, one per class
+	 */
+	/*@ ensures \forall TowerCoordinates coord; \result.contains(coord); 
+	  												isValidMove(coord.getX(),coord.getY()); 
+	  @*/
+	/*@ pure @*/ public List<TowerCoordinates> getDistinctAvailableTowers() {
+		int symmetries = getSymmetries();
+		List<TowerCoordinates> distinctTowers = new ArrayList<TowerCoordinates>();
+		for (int i = 0; i < towers; i++) {
+			if (isAvailableTower(i) && isDistinctMove(i, symmetries)) {
+				distinctTowers.add(coordinates[i]);
+			}
+		}
+		return distinctTowers;
+	}
+	
+	/** 
+	 * Checks whether this board keeps threat counters, i.e. whether its geometry has a fixed 
+	 * height and at most <code>MAX_COUNTED_LINES</code> winning lines.
+	 * @return Threat counters are available
+	 */
+	/*@ pure @*/ public boolean tracksThreats() {
+		return lineTotals != null;
+	}
+	
+	/** 
+	 * Checks whether this board keeps a bit mask of the pieces of every player, i.e. whether 
+	 * its geometry has a fixed height and at most <code>WinningLines.MAX_MASK_CELLS</code> 
+	 * cells. Wins are then checked by comparing these masks with the masks of the winning 
+	 * lines.
+	 * @return Bit masks are available
+	 */
+	/*@ pure @*/ public boolean usesBitMasks() {
+		return pieceMasks != null;
+	}
+	
+	/** 
+	 * Returns the number of winning lines that hold exactly <code>pieces</code> pieces of the 
+	 * given player and no pieces of other players.
+	 * @param playerID ID of a player
+	 * @param pieces Number of pieces on the line
+	 * @return Number of such open lines
+	 */
+	//@ requires tracksThreats() && pieces > 0 && pieces <= winningLength;
+	/*@ pure @*/ public int getOpenLineCount(int playerID, int pieces) {
+		int slot = findSlot(playerID);
+		return slot == NO_MOVE ? 0 : openLines[slot][pieces];
+	}
+	
+	/** 
+	 * Checks whether a piece of the given player at the given empty cell would complete a 
+	 * winning line, regardless of whether the cell can be played at the moment.
+	 * @param tower Tower index
+	 * @param z Z position
+	 * @param playerID ID of a player
+	 * @return A piece of this player at the cell completes a winning line
+	 */
+	//@ requires tower >= 0 && tower < xDim * yDim && z > getHeightOfTower(tower);
+	//@ requires zDim == UNLIMITED_Z || z <= zDim;
+	/*@ pure @*/ public boolean isWinningCell(int tower, int z, int playerID) {
+		if (lines == null) {
+			// The direction walk only reads the cells next to the given one
+			return cellHasWon(tower % xDim + 1, tower / xDim + 1, z, pieceOf(playerID));
+		}
+		int slot = findSlot(playerID);
+		int cell = tower + (z - 1) * towers;
+		if (pieceMasks != null) {
+			return slot == NO_MOVE ? winningLength == 1 : completesLine(cell, slot);
+		}
+		if (lineTotals == null) {
+			if (slot == NO_MOVE) {
+				return winningLength == 1;
+			}
+			for (int i = lines.firstLineOf(cell); i < lines.endLineOf(cell); i++) {
+				if (isLineOwnedBy(lines.getLine(i), slot + 1, cell)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		for (int i = lines.firstLineOf(cell); i < lines.endLineOf(cell); i++) {
+			int line = lines.getLine(i);
+			if (lineTotals[line] == winningLength - 1 
+					&& (winningLength == 1 || slot != NO_MOVE
+					&& lineCounts[slot][line] == winningLength - 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/** 
+	 * Rates an empty cell for the given player by the winning lines through it. With threat 
+	 * counters every line through the cell without pieces of other players adds 
+	 * <code>4^pieces</code> for the pieces of the player on it, otherwise every direction adds 
+	 * <code>4^pieces</code> for the pieces of the player connected to the cell.
+	 * @param tower Tower index
+	 * @param z Z position
+	 * @param playerID ID of a player
+	 * @return Potential of the cell, higher is better
+	 */
+	//@ requires tower >= 0 && tower < xDim * yDim && z > getHeightOfTower(tower);
+	//@ requires zDim == UNLIMITED_Z || z <= zDim;
+	//@ ensures \result >= 0;
+	/*@ pure @*/ public int getCellPotential(int tower, int z, int playerID) {
+		int slot = findSlot(playerID);
+		int potential = 0;
+		if (lineTotals == null) {
+			int x = tower % xDim + 1;
+			int y = tower / xDim + 1;
+			for (int[] direction : DIRECTIONS) {
+				int pieces = connectedPieces(x, y, z, direction[0], direction[1], direction[2], 
+						slot + 1) - 1;
+				potential += 1 << 2 * Math.min(pieces, MAX_POTENTIAL_PIECES);
+			}
+			return potential;
+		}
+		int cell = tower + (z - 1) * towers;
+		for (int i = lines.firstLineOf(cell); i < lines.endLineOf(cell); i++) {
+			int line = lines.getLine(i);
+			int pieces = slot == NO_MOVE ? 0 : lineCounts[slot][line];
+			if (lineTotals[line] == pieces) {
+				potential += 1 << 2 * Math.min(pieces, MAX_POTENTIAL_PIECES);
+			}
+		}
+		return potential;
+	}
+	
+	/** 
+	 * Checks whether a piece of the given player on the tower with the given index would 
+	 * complete a winning line.
+	 * @param tower Tower index
+	 * @param playerID ID of a player
+	 * @return Playing this tower wins the game for this player
+	 */
+	//@ requires tower >= 0 && tower < xDim * yDim && isAvailableTower(tower);
+	/*@ pure @*/ public boolean isWinningMove(int tower, int playerID) {
+		return isWinningCell(tower, heights[tower] + 1, playerID);
+	}
+	
+		/** 
+	 * Returns the index of the tower at (<code>x</code>, <code>y</code>), as used by the 
+	 * moves of <code>applyMove</code>.
+	 * @param x X position
+	 * @param y Y position
+	 * @return Tower index
+	 */
+	//@ requires isValidTower(x,y);
+	//@ ensures getTowerCoordinates(\result).equals(new TowerCoordinates(x, y));
+	/*@ pure @*/ public int getTowerIndex(int x, int y) {
+		return towerIndex(x, y);
+	}
+	
+	/** 
+	 * Checks whether a piece can be added to the tower with the given index.
+	 * @param tower Tower index
+	 * @return Tower isn't full
+	 */
+	//@ requires tower >= 0 && tower < xDim * yDim;
+	//@ ensures \result == isValidMove(getTowerCoordinates(tower).x, getTowerCoordinates(tower).y);
+	/*@ pure @*/ public boolean isAvailableTower(int tower) {
+		return zDim == UNLIMITED_Z || heights[tower] < zDim;
+	}
+	
+	/** 
+	 * Returns the height of the tower with the given index.
+	 * @param tower Tower index
+	 * @return Height of the tower
+	 */
+	//@ requires tower >= 0 && tower < xDim * yDim;
+	/*@ pure @*/ public int getHeightOfTower(int tower) {
+		return heights[tower];
+	}
+	
+	/** 
+	 * Returns the number of moves made on this board.
+	 * @return Number of moves made
+	 */
+	//@ ensures \result >= 0;
+	/*@ pure @*/ public int getMoveCount() {
+		return moveCount;
+	}
+	
+	/** 
+	 * Returns the tower index of a move made on this board.
+	 * @param i Number of the move, 0 for the first move
+	 * @return Tower index of the move
+	 */
+	//@ requires i >= 0 && i < getMoveCount();
+	/*@ pure @*/ public int getMove(int i) {
+		return moves[i];
+	}
+
+	/**
+	 * Returns the number of players that have placed pieces on this board.
+	 * @return Number of players with pieces on the board
+	 */
+	//@ ensures \result >= 0;
+	/*@ pure @*/ public int getPlayerCount() {
+		return slots;
+	}
+
+	/**
+	 * Returns the ID of a player that has placed pieces on this board, players are numbered in
+	 * the order of their first move.
+	 * @param i Number of the player, 0 for the player that moved first
+	 * @return ID of the player
+	 */
+	//@ requires i >= 0 && i < getPlayerCount();
+	/*@ pure @*/ public int getPlayerID(int i) {
+		return slotIDs[i];
+	}
+	
 	/** 
 	 * Creates and returns a deep copy of the board.
 	 * @return Deep copy of this board
 	 */
 	//@ ensures \result.equals(this);
 	/*@ pure @*/ public Board deepCopy() {
-		try {
-			Board boardCopy = new Board(xDim, yDim, zDim, winningLength);
-			Iterator<List<Integer>> oldBoardIterator = boardData.iterator(); 
-			Iterator<List<Integer>> newBoardIterator = boardCopy.boardData.iterator(); 
-			while (oldBoardIterator.hasNext()) {
-				newBoardIterator.next().addAll(oldBoardIterator.next());
-			}
-			return boardCopy;
-		} catch (IllegalBoardConstructorArgumentsException e) {
-			System.err.println("This can't ever happen :S");
-			System.err.println(e.getMessage());
-			return null;
+		return new Board(this, true);
+	}
+	
+	/** 
+	 * Creates and returns a deep copy of the board that does not notify observers of its moves, 
+	 * for use by computer players trying out moves.
+	 * @return Deep copy of this board without notifications
+	 */
+	//@ ensures !\result.isNotifying();
+	/*@ pure @*/ public Board searchCopy() {
+		return new Board(this, false);
+	}
+	
+	/** 
+	 * Returns whether <code>makeMove</code> notifies the observers of this board.
+	 * @return Observers are notified of moves
+	 */
+	/*@ pure @*/ public boolean isNotifying() {
+		return notifying;
+	}
+	
+	/** 
+	 * Returns the Zobrist hash of the position on this board, kept up to date by every move and 
+	 * undo. Boards holding the same pieces of the same players in the same cells have the same 
+	 * hash, boards of different geometries are very unlikely to share hashes.
+	 * @return Hash of the position
+	 */
+	/*@ pure @*/ public long getHash() {
+		return hash;
+	}
+	
+	// <------ Symmetries ------>
+	
+	/** 
+	 * Returns the number of symmetries of the board geometry: the identity, the reflections in 
+	 * x and in y and the rotation by 180 degrees, plus four more swapping x and y if the board 
+	 * is square. Symmetries are numbered from 0, the identity, to this number.
+	 * @return 8 for square boards, 4 otherwise
+	 */
+	//@ ensures \result == (xDim == yDim ? 8 : 4);
+	/*@ pure @*/ public int getSymmetryCount() {
+		return xDim == yDim ? SQUARE_SYMMETRIES : RECTANGLE_SYMMETRIES;
+	}
+	
+	/** 
+	 * Returns the index of the tower a symmetry maps the given tower to. Bit 2 of the symmetry 
+	 * swaps x and y, then bit 0 reflects x and bit 1 reflects y.
+	 * @param tower Tower index
+	 * @param symmetry Number of the symmetry
+	 * @return Tower index of the image of the tower
+	 */
+	//@ requires tower >= 0 && tower < xDim * yDim;
+	//@ requires symmetry >= 0 && symmetry < getSymmetryCount();
+	/*@ pure @*/ public int transformTower(int tower, int symmetry) {
+		int x = tower % xDim;
+		int y = tower / xDim;
+		if ((symmetry & SWAP_XY) != 0) {
+			int swap = x;
+			x = y;
+			y = swap;
+		}
+		if ((symmetry & REFLECT_X) != 0) {
+			x = xDim - 1 - x;
+		}
+		if ((symmetry & REFLECT_Y) != 0) {
+			y = yDim - 1 - y;
+		}
+		return x + y * xDim;
+	}
+	
+	/** 
+	 * Returns the hash the position would have after applying a symmetry to it, computed from 
+	 * all pieces on the board.
+	 * @param symmetry Number of the symmetry
+	 * @return Hash of the transformed position
+	 */
+	//@ requires symmetry >= 0 && symmetry < getSymmetryCount();
+	//@ ensures symmetry == 0 ==> \result == getHash();
+	/*@ pure @*/ public long getSymmetricHash(int symmetry) {
+		if (symmetry == 0) {
+			return hash;
+		}
+		long result = geometryKey();
+		for (int tower = 0; tower < towers; tower++) {
+			int image = transformTower(tower, symmetry);
+			for (int z = 0; z < heights[tower]; z++) {
+				result ^= zobristKey(image + z * towers, cells[tower + z * towers] - 1);
+			}
+		}
+		return result;
+	}
+	
+	/** 
+	 * Returns the same hash for all positions that symmetries map onto each other, the lowest 
+	 * hash of the transformed positions.
+	 * @return Canonical hash of the position
+	 */
+	/*@ pure @*/ public long getCanonicalHash() {
+		long canonical = hash;
+		for (int symmetry = 1; symmetry < getSymmetryCount(); symmetry++) {
+			canonical = Math.min(canonical, getSymmetricHash(symmetry));
 		}
+		return canonical;
+	}
+	
+	/** 
+	 * Returns the symmetries that map the current position onto itself.
+	 * @return Bit mask with bit <code>s</code> set for every such symmetry <code>s</code>, 
+	 * always including the identity
+	 */
+	//@ ensures (\result & 1) == 1;
+	/*@ pure @*/ public int getSymmetries() {
+		int symmetries = 1;
+		for (int symmetry = 1; symmetry < getSymmetryCount(); symmetry++) {
+			if (getSymmetricHash(symmetry) == hash && isSymmetry(symmetry)) {
+				symmetries |= 1 << symmetry;
+			}
+		}
+		return symmetries;
+	}
+	
+	/** 
+	 * Checks whether a tower has the lowest index of all towers the given symmetries map it to, 
+	 * so a search only has to try one move of every set of equivalent moves.
+	 * @param tower Tower index
+	 * @param symmetries Bit mask of symmetries of the position, as returned by 
+	 * <code>getSymmetries()</code>
+	 * @return No symmetry maps the tower to a tower with a lower index
+	 */
+	//@ requires tower >= 0 && tower < xDim * yDim;
+	/*@ pure @*/ public boolean isDistinctMove(int tower, int symmetries) {
+		for (int symmetry = 1; symmetry < getSymmetryCount(); symmetry++) {
+			if ((symmetries & (1 << symmetry)) != 0 && transformTower(tower, symmetry) < tower) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	// <------ Required to present the data to the GUI without using another data format ------>
 	
 	/** 
-	 * Creates and returns a deep copy of the <code>boardData</code>, for use by the view.
+	 * Creates and returns the towers of the board as read-only lists of owners, ordered by 
+	 * tower index, for use by the view. Only the pieces are copied, the lists and their 
+	 * <code>Integer</code> owners are created when they are read.
 	 * @return Copy of the board data.
 	 */
 	/*@ pure @*/ public List<List<Integer>> deepDataCopy() {
-		return deepCopy().boardData;
+		byte[] pieces = new byte[moveCount];
+		int[] offsets = new int[towers + 1];
+		for (int tower = 0; tower < towers; tower++) {
+			offsets[tower + 1] = offsets[tower] + heights[tower];
+			for (int z = 0; z < heights[tower]; z++) {
+				pieces[offsets[tower] + z] = cells[tower + z * towers];
+			}
+		}
+		return new BoardView(pieces, offsets, Arrays.copyOf(slotIDs, slots));
 	}
 	
 	// <------ Internal workings ------>
@@ -299,7 +812,7 @@ public class Board extends Observable {
 	/*@ pure nullable @*/ public Integer getCellOwner(int x, int y, int z) throws 
 					CoordinatesOutOfBoundsException {
 		if (z <= getTowerHeight(x, y) && z > 0) {
-			return getTower(x, y).get(z - 1);
+			return slotIDs[cells[cellIndex(x, y, z)] - 1];
 		} else {
 			return null;
 		}
@@ -332,11 +845,15 @@ public class Board extends Observable {
 	//@ ensures \result >= 0 && (\result <= zDim || zDim == UNLIMITED_Z);
 	//@ ensures \forall int z; isValidCell(x,y,z); isEmptyCell(x,y,z) == (z > \result);
 	/*@ pure @*/ public int getTowerHeight(int x, int y) throws CoordinatesOutOfBoundsException {
-		return getTower(x, y).size();
+		if (!isValidTower(x, y)) {
+			throw new CoordinatesOutOfBoundsException(x, y, this);
+		}
+		return heights[towerIndex(x, y)];
 	}
 	
 	/** 
-	 * Gets the tower at (<code>x</code>, <code>y</code>).
+	 * Gets a read-only copy of the tower at (<code>x</code>, <code>y</code>), i.e. the owners of
+	 * its pieces from bottom to top.
 	 * @param x X position
 	 * @param y Y position
 	 * @return Tower at (<code>x</code>, <code>y</code>)
@@ -348,8 +865,12 @@ public class Board extends Observable {
 		if (!isValidTower(x, y)) {
 			throw new CoordinatesOutOfBoundsException(x, y, this);
 		}
-		return boardData.get((x - 1) + (y - 1) * xDim);
-		//TODO changed.
+		int tower = towerIndex(x, y);
+		byte[] pieces = new byte[heights[tower]];
+		for (int z = 0; z < pieces.length; z++) {
+			pieces[z] = cells[tower + z * towers];
+		}
+		return new TowerView(pieces, 0, pieces.length, Arrays.copyOf(slotIDs, slots));
 	}
 	
 	/** 
@@ -362,60 +883,33 @@ public class Board extends Observable {
 	 * @param xDir X direction
 	 * @param yDir Y direction
 	 * @param zDir Z direction
+	 * @param owner ID of the owner of the piece
 	 * @return Direction has won
 	 */
-	//@ requires isValidCell(x,y,z) && !isEmptyCell(x,y,z);
+	//@ requires isValidCell(x,y,z) && !isEmptyCell(x,y,z) && owner != null;
 	/*@ pure @*/ public boolean directionHasWon(int x, int y, int z, 
-													int xDir, int yDir, int zDir, Integer owner) {
-		int connectedPieces = 1;
-		int distance = 1;
-		int sign = 1;
-		while (connectedPieces < winningLength) {
-			int checkX = x + sign * distance * xDir;
-			int checkY = y + sign * distance * yDir;
-			int checkZ = z + sign * distance * zDir;
-			try {
-				if (isValidCell(checkX, checkY, checkZ) && getCellOwner(checkX, checkY, checkZ) 
-						!= null	&& getCellOwner(checkX, checkY, checkZ).equals(owner)) {
-					connectedPieces = connectedPieces + 1;
-					distance = distance + 1;
-				} else {
-					if (sign == 1) {
-						//Reverse
-						sign = -1;
-						distance = 1;
-					} else {
-						//If reversed already, terminate
-						return false;
-					}
-				}
-			} catch (CoordinatesOutOfBoundsException e) {
-				System.err.println("directionHasWon method is broken");
-				System.err.println(e.getMessage());
-				return false;
-			}
-		}
-		return true;
+													int xDir, int yDir, int zDir, int owner) {
+		return directionIsWinning(x, y, z, xDir, yDir, zDir, pieceOf(owner));
 	}
 	
 	/** 
-	 * Returns the <code>TowerCoordinates</code> belonging to a tower index.
+	 * Returns the <code>TowerCoordinates</code> belonging to a tower index. The instances are 
+	 * shared by all boards with the same x and y dimensions.
 	 * @param i index
 	 * @return <code>TowerCoordinates</code> of tower
 	 */
-	//@ requires i >= 0 && i < xDim * yDim - 1;
+	//@ requires i >= 0 && i < xDim * yDim;
 	//@ ensures isValidTower(\result.getX(),\result.getY());
 	/*@ pure @*/ public TowerCoordinates getTowerCoordinates(int i) {
-		int x = i % xDim + 1;
-		int y = i / xDim + 1;
-		return new TowerCoordinates(x, y);
+		return coordinates[i];
 	}
 	
 	
 	// <------ COMMANDS ------>
 	
 	/** 
-	 * Add a piece to the tower at (<code>x</code>, <code>y</code>).
+	 * Add a piece to the tower at (<code>x</code>, <code>y</code>) and notify the observers, 
+	 * unless notifications are switched off for this board.
 	 * @param x X position to place piece at
 	 * @param y Y position to place piece at
 	 * @param playerID ID of player that makes a move
@@ -427,9 +921,11 @@ public class Board extends Observable {
 	  @*/
 	public void makeMove(int x, int y, Integer playerID) throws IllegalCoordinatesException {
 		if (isValidMove(x, y)) {
-			getTower(x, y).add(playerID);
-			setChanged();
-			notifyObservers(new TowerCoordinates(x, y));
+			place(towerIndex(x, y), playerID);
+			if (notifying) {
+				setChanged();
+				notifyObservers(new TowerCoordinates(x, y));
+			}
 		} else if (!isValidTower(x, y)) {
 			throw new CoordinatesOutOfBoundsException(x, y, this);
 		} else if (zDim != UNLIMITED_Z && getTowerHeight(x, y) >= zDim) {
@@ -437,6 +933,60 @@ public class Board extends Observable {
 		}
 	}
 	
+	/** 
+	 * Sets whether <code>makeMove</code> notifies the observers of this board. Boards only used 
+	 * to try out moves can switch this off to skip the observer machinery.
+	 * @param notify Whether observers are notified of moves
+	 */
+	//@ ensures isNotifying() == notify;
+	public void setNotifying(boolean notify) {
+		notifying = notify;
+	}
+	
+	/** 
+	 * Adds a piece to the tower with the given index, without notifying observers. Meant for 
+	 * computer players exploring moves, which can take the move back with 
+	 * <code>undoMove</code>.
+	 * @param tower Tower index to place piece at
+	 * @param playerID ID of player that makes a move
+	 */
+	//@ requires tower >= 0 && tower < xDim * yDim && isAvailableTower(tower);
+	//@ ensures getHeightOfTower(tower) == \old(getHeightOfTower(tower)) + 1;
+	//@ ensures getMoveCount() == \old(getMoveCount()) + 1 && getMove(getMoveCount() - 1) == tower;
+	public void applyMove(int tower, int playerID) {
+		place(tower, playerID);
+	}
+	
+	/** 
+	 * Takes back the last move made on this board, without notifying observers.
+	 * @return Tower index of the move taken back
+	 */
+	//@ requires getMoveCount() > 0;
+	//@ ensures getMoveCount() == \old(getMoveCount()) - 1;
+	//@ ensures getHeightOfTower(\result) == \old(getHeightOfTower(\result)) - 1;
+	public int undoMove() {
+		moveCount--;
+		int tower = moves[moveCount];
+		if (heights[tower] == zDim) {
+			fullTowers--;
+		}
+		heights[tower]--;
+		int cell = tower + heights[tower] * towers;
+		int slot = cells[cell] - 1;
+		if (lineTotals != null) {
+			removeFromLines(cell, slot);
+		}
+		hash ^= zobristKey(cell, slot);
+		cells[cell] = EMPTY;
+		if (pieceMasks != null) {
+			pieceMasks[slot * lines.maskWords + (cell >>> 6)] &= ~(1L << cell);
+		}
+		if (winningMove == moveCount) {
+			winningMove = NO_MOVE;
+		}
+		return tower;
+	}
+	
 	// <------ Internal workings ------>
 	
 	/** 
@@ -444,15 +994,534 @@ public class Board extends Observable {
 	 */
 	//@ ensures (\forall int x,y,z; isValidCell(x,y,z); isEmptyCell(x,y,z));
 	private void reset() {
-		boardData = new ArrayList<List<Integer>>(xDim * yDim);
-		if (zDim == UNLIMITED_Z) {
-			for (int i = 0; i < xDim * yDim; i++) {
-				boardData.add(new ArrayList<Integer>(50));
-			}
+		levels = zDim == UNLIMITED_Z ? LEVEL_CHUNK : zDim;
+		cells = new byte[towers * levels];
+		heights = new int[towers];
+		fullTowers = 0;
+		moves = new int[Math.min(towers * levels, INITIAL_MOVES)];
+		moveCount = 0;
+		winningMove = NO_MOVE;
+		slotIDs = new int[2];
+		slots = 0;
+		hash = geometryKey();
+		if (lines != null && lines.lineCount <= MAX_COUNTED_LINES) {
+			lineCounts = new int[slotIDs.length][];
+			lineTotals = new int[lines.lineCount];
+			openLines = new int[slotIDs.length][];
+		}
+		if (lines != null && lines.maskWords > 0) {
+			pieceMasks = new long[slotIDs.length * lines.maskWords];
+		}
+	}
+	
+	/** 
+	 * Puts a piece of the given player on top of the tower with the given index and records the 
+	 * move. The cell storage of boards with unlimited height grows by <code>LEVEL_CHUNK</code>
+	 * levels when a tower reaches the top of it.
+	 * @param tower Tower index
+	 * @param playerID ID of the owner of the piece
+	 */
+	//@ requires tower >= 0 && tower < xDim * yDim;
+	private void place(int tower, int playerID) {
+		if (heights[tower] == levels) {
+			levels += LEVEL_CHUNK;
+			cells = Arrays.copyOf(cells, towers * levels);
+		}
+		if (moveCount == moves.length) {
+			moves = Arrays.copyOf(moves, moves.length * 2);
+		}
+		int slot = slotOf(playerID);
+		int cell = tower + heights[tower] * towers;
+		cells[cell] = (byte) (slot + 1);
+		if (pieceMasks != null) {
+			pieceMasks[slot * lines.maskWords + (cell >>> 6)] |= 1L << cell;
+		}
+		heights[tower]++;
+		if (heights[tower] == zDim) {
+			fullTowers++;
+		}
+		moves[moveCount] = tower;
+		moveCount++;
+		hash ^= zobristKey(cell, slot);
+		boolean won;
+		if (lineTotals != null) {
+			won = addToLines(cell, slot);
 		} else {
-			for (int i = 0; i < xDim * yDim; i++) {
-				boardData.add(new ArrayList<Integer>(zDim));
+			won = winningMove == NO_MOVE && lastMoveHasWon();
+		}
+		if (won && winningMove == NO_MOVE) {
+			winningMove = moveCount - 1;
+			winner = playerID;
+		}
+	}
+	
+	/** 
+	 * Updates the threat counters of all lines through a cell for a piece added to it.
+	 * @param cell Cell index
+	 * @param slot Slot of the owner of the new piece
+	 * @return The piece completes a winning line
+	 */
+	//@ requires lineTotals != null;
+	private boolean addToLines(int cell, int slot) {
+		boolean won = false;
+		int[] counts = lineCounts[slot];
+		for (int i = lines.firstLineOf(cell); i < lines.endLineOf(cell); i++) {
+			int line = lines.getLine(i);
+			int mine = counts[line];
+			int total = lineTotals[line];
+			if (mine == total) {
+				// Line held only pieces of this player, or none
+				if (mine > 0) {
+					openLines[slot][mine]--;
+				}
+				openLines[slot][mine + 1]++;
+				won = won || mine + 1 == winningLength;
+			} else if (mine == 0) {
+				// Line held only pieces of another player, it is blocked now
+				int other = soleOwner(line, total);
+				if (other != NO_MOVE) {
+					openLines[other][total]--;
+				}
+			}
+			counts[line] = mine + 1;
+			lineTotals[line] = total + 1;
+		}
+		return won;
+	}
+	
+	/** 
+	 * Updates the threat counters of all lines through a cell for a piece removed from it.
+	 * @param cell Cell index
+	 * @param slot Slot of the owner of the removed piece
+	 */
+	//@ requires lineTotals != null;
+	private void removeFromLines(int cell, int slot) {
+		int[] counts = lineCounts[slot];
+		for (int i = lines.firstLineOf(cell); i < lines.endLineOf(cell); i++) {
+			int line = lines.getLine(i);
+			int mine = counts[line] - 1;
+			int total = lineTotals[line] - 1;
+			counts[line] = mine;
+			lineTotals[line] = total;
+			if (mine == total) {
+				openLines[slot][mine + 1]--;
+				if (mine > 0) {
+					openLines[slot][mine]++;
+				}
+			} else if (mine == 0) {
+				// Line holds only pieces of another player again
+				int other = soleOwner(line, total);
+				if (other != NO_MOVE) {
+					openLines[other][total]++;
+				}
+			}
+		}
+	}
+	
+	/** 
+	 * Returns the slot of the player holding all pieces on a line.
+	 * @param line Line index
+	 * @param total Number of pieces on the line
+	 * @return Slot holding all <code>total</code> pieces, NO_MOVE if there is none
+	 */
+	/*@ pure @*/ private int soleOwner(int line, int total) {
+		for (int slot = 0; slot < slots; slot++) {
+			if (lineCounts[slot][line] == total) {
+				return slot;
+			}
+		}
+		return NO_MOVE;
+	}
+	
+	/** 
+	 * Returns the Zobrist key of a piece, derived from the cell and slot by the SplitMix64 
+	 * mixing function, so boards of any size need no table of random keys.
+	 * @param cell Cell index of the piece, -1 for the key of the geometry
+	 * @param slot Slot of the owner of the piece, or the packed geometry
+	 * @return Zobrist key
+	 */
+	/*@ pure @*/ private static long zobristKey(int cell, long slot) {
+		long z = ((long) cell << 20 ^ slot) * GOLDEN_GAMMA + GOLDEN_GAMMA;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	/** 
+	 * Returns the coordinates of all towers of the given dimensions by tower index, creating 
+	 * them the first time they are requested.
+	 * @param xDim X dimension of the board
+	 * @param yDim Y dimension of the board
+	 * @return Shared coordinates of all towers
+	 */
+	private static TowerCoordinates[] coordinatesOf(int xDim, int yDim) {
+		Long key = ((long) xDim << 32) | yDim;
+		TowerCoordinates[] result = COORDINATES.get(key);
+		if (result == null) {
+			result = new TowerCoordinates[xDim * yDim];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = new TowerCoordinates(i % xDim + 1, i / xDim + 1);
+			}
+			COORDINATES.putIfAbsent(key, result);
+		}
+		return result;
+	}
+	
+	/** 
+	 * Returns the Zobrist key of the board geometry, the hash of the empty board.
+	 * @return Zobrist key of the geometry
+	 */
+	/*@ pure @*/ private long geometryKey() {
+		return zobristKey(-1, ((long) xDim << 48) ^ ((long) yDim << 32) ^ ((long) zDim << 16)
+				^ winningLength);
+	}
+	
+	/** 
+	 * Checks whether a symmetry maps every piece on the board onto a piece of the same player.
+	 * @param symmetry Number of the symmetry
+	 * @return The symmetry maps the position onto itself
+	 */
+	/*@ pure @*/ private boolean isSymmetry(int symmetry) {
+		for (int tower = 0; tower < towers; tower++) {
+			int image = transformTower(tower, symmetry);
+			if (heights[image] != heights[tower]) {
+				return false;
+			}
+			for (int z = 0; z < heights[tower]; z++) {
+				if (cells[image + z * towers] != cells[tower + z * towers]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/** 
+	 * Returns the slot of a player.
+	 * @param playerID ID of a player
+	 * @return Slot of this player, NO_MOVE if it has not placed any pieces
+	 */
+	/*@ pure @*/ private int findSlot(int playerID) {
+		for (int slot = 0; slot < slots; slot++) {
+			if (slotIDs[slot] == playerID) {
+				return slot;
+			}
+		}
+		return NO_MOVE;
+	}
+	
+	/** 
+	 * Returns the value stored in the cells holding pieces of a player.
+	 * @param playerID ID of a player
+	 * @return Slot + 1 of this player, EMPTY if it has not placed any pieces
+	 */
+	/*@ pure @*/ private int pieceOf(int playerID) {
+		return findSlot(playerID) + 1;
+	}
+	
+	/** 
+	 * Returns the slot of a player, assigning a new slot if it has not placed pieces yet.
+	 * @param playerID ID of a player
+	 * @return Slot of this player
+	 * @throws IllegalStateException if <code>MAX_SLOTS</code> players have placed pieces already
+	 */
+	private int slotOf(int playerID) {
+		int slot = findSlot(playerID);
+		if (slot != NO_MOVE) {
+			return slot;
+		}
+		if (slots == MAX_SLOTS) {
+			throw new IllegalStateException("A board holds pieces of at most " + MAX_SLOTS 
+					+ " players");
+		}
+		if (slots == slotIDs.length) {
+			slotIDs = Arrays.copyOf(slotIDs, slots * 2);
+			if (lineTotals != null) {
+				lineCounts = Arrays.copyOf(lineCounts, slotIDs.length);
+				openLines = Arrays.copyOf(openLines, slotIDs.length);
+			}
+			if (pieceMasks != null) {
+				pieceMasks = Arrays.copyOf(pieceMasks, slotIDs.length * lines.maskWords);
+			}
+		}
+		slotIDs[slots] = playerID;
+		if (lineTotals != null) {
+			lineCounts[slots] = new int[lines.lineCount];
+			openLines[slots] = new int[winningLength + 1];
+		}
+		slots++;
+		return slots - 1;
+	}
+	
+	/** 
+	 * Checks whether the piece at (<code>x</code>, <code>y</code>, <code>z</code>), stored as
+	 * <code>piece</code>, belongs to a winning set.
+	 * @param x X position
+	 * @param y Y position
+	 * @param z Z position
+	 * @param piece Slot + 1 of the owner of the piece
+	 * @return Piece at (<code>x</code>, <code>y</code>, <code>z</code>) belongs to winning set
+	 */
+	//@ requires isValidCell(x,y,z) && z <= getHeightOfTower(towerIndex(x, y));
+	/*@ pure @*/ private boolean cellHasWon(int x, int y, int z, int piece) {
+		if (pieceMasks != null) {
+			return completesLine(cellIndex(x, y, z), piece - 1);
+		}
+		if (lines != null) {
+			// Only the lines through this cell can be winning
+			int cell = cellIndex(x, y, z);
+			for (int i = lines.firstLineOf(cell); i < lines.endLineOf(cell); i++) {
+				if (isLineOwnedBy(lines.getLine(i), piece, NO_MOVE)) {
+					return true;
+				}
 			}
+			return false;
+		}
+		// Linearly independent direction vectors:
+		// (1,0,0) X-direction
+		// (0,1,0) Y-direction
+		// (0,0,1) Z-direction
+		// (1,1,0) X+Y-direction
+		// (1,-1,0) X-Y-direction
+		// (1,0,1) X+Z-direction
+		// (1,0,-1) X-Z-direction
+		// (0,1,1) Y+Z-direction
+		// (0,1,-1) Y-Z-direction
+		// (1,1,1) X+Y+Z-direction
+		// (1,1,-1) X+Y-Z-direction
+		// (1,-1,1) X-Y+Z-direction
+		// (1,-1,-1) X-Y-Z-direction
+		return directionIsWinning(x, y, z, 1, 0, 0, piece) || 
+				directionIsWinning(x, y, z, 0, 1, 0, piece) || 
+				directionIsWinning(x, y, z, 0, 0, 1, piece) || 
+				directionIsWinning(x, y, z, 1, 1, 0, piece) ||
+				directionIsWinning(x, y, z, 1, -1, 0, piece) || 
+				directionIsWinning(x, y, z, 1, 0, 1, piece) ||
+				directionIsWinning(x, y, z, 1, 0, -1, piece) || 
+				directionIsWinning(x, y, z, 0, 1, 1, piece) ||
+				directionIsWinning(x, y, z, 0, 1, -1, piece) || 
+				directionIsWinning(x, y, z, 1, 1, 1, piece) ||
+				directionIsWinning(x, y, z, 1, 1, -1, piece) || 
+				directionIsWinning(x, y, z, 1, -1, 1, piece) ||
+				directionIsWinning(x, y, z, 1, -1, -1, piece);
+	}
+	
+	/** 
+	 * Checks whether the direction (<code>xDir</code>, <code>yDir</code>, <code>zDir</code>), 
+	 * including its reverse, starting at the cell (<code>x</code>, <code>y</code>, 
+	 * <code>z</code>) holds <code>winningLength</code> connected pieces of the given slot.
+	 * @param x X position of cell
+	 * @param y Y position of cell
+	 * @param z Z position of cell
+	 * @param xDir X direction
+	 * @param yDir Y direction
+	 * @param zDir Z direction
+	 * @param piece Slot + 1 of the owner of the piece, EMPTY matches no piece
+	 * @return Direction has won
+	 */
+	/*@ pure @*/ private boolean directionIsWinning(int x, int y, int z, 
+													int xDir, int yDir, int zDir, int piece) {
+		return connectedPieces(x, y, z, xDir, yDir, zDir, piece) >= winningLength;
+	}
+	
+	/** 
+	 * Counts the pieces of the given slot connected to the cell (<code>x</code>, <code>y</code>,
+	 * <code>z</code>) in the direction (<code>xDir</code>, <code>yDir</code>, <code>zDir</code>) 
+	 * and its reverse, including the cell itself, up to <code>winningLength</code>.
+	 * @param x X position of cell
+	 * @param y Y position of cell
+	 * @param z Z position of cell
+	 * @param xDir X direction
+	 * @param yDir Y direction
+	 * @param zDir Z direction
+	 * @param piece Slot + 1 of the owner of the piece, EMPTY matches no piece
+	 * @return Number of connected pieces
+	 */
+	//@ ensures \result >= 1 && \result <= Math.max(1, winningLength);
+	/*@ pure @*/ private int connectedPieces(int x, int y, int z, 
+													int xDir, int yDir, int zDir, int piece) {
+		int connectedPieces = 1;
+		int distance = 1;
+		int sign = 1;
+		while (connectedPieces < winningLength) {
+			int checkX = x + sign * distance * xDir;
+			int checkY = y + sign * distance * yDir;
+			int checkZ = z + sign * distance * zDir;
+			if (isValidTower(checkX, checkY) && checkZ > 0 
+					&& checkZ <= heights[towerIndex(checkX, checkY)]
+					&& cells[cellIndex(checkX, checkY, checkZ)] == piece) {
+				connectedPieces = connectedPieces + 1;
+				distance = distance + 1;
+			} else {
+				if (sign == 1) {
+					//Reverse
+					sign = -1;
+					distance = 1;
+				} else {
+					//If reversed already, terminate
+					return connectedPieces;
+				}
+			}
+		}
+		return connectedPieces;
+	}
+	
+	/** 
+	 * Checks with the bit masks whether a line through a cell holds only pieces of a slot, 
+	 * counting the cell as holding one, i.e. whether a piece of this slot at the cell completes 
+	 * or has completed a winning line.
+	 * @param cell Cell index
+	 * @param slot Slot of a player
+	 * @return A line through the cell is complete
+	 */
+	//@ requires pieceMasks != null && slot >= 0 && slot < slots;
+	/*@ pure @*/ private boolean completesLine(int cell, int slot) {
+		int words = lines.maskWords;
+		int offset = slot * words;
+		// Boards of at most 64 cells, such as the default board, need one word
+		if (words == 1) {
+			long pieces = pieceMasks[offset] | 1L << cell;
+			for (int i = lines.firstLineOf(cell); i < lines.endLineOf(cell); i++) {
+				long mask = lines.getLineMask(lines.getLine(i), 0);
+				if ((pieces & mask) == mask) {
+					return true;
+				}
+			}
+			return false;
+		}
+		int cellWord = cell >>> 6;
+		for (int i = lines.firstLineOf(cell); i < lines.endLineOf(cell); i++) {
+			int line = lines.getLine(i);
+			boolean complete = true;
+			for (int word = 0; word < words && complete; word++) {
+				long mask = lines.getLineMask(line, word);
+				long pieces = word == cellWord ? pieceMasks[offset + word] | 1L << cell 
+						: pieceMasks[offset + word];
+				complete = (pieces & mask) == mask;
+			}
+			if (complete) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/** 
+	 * Checks whether all cells of the given winning line belong to the given player.
+	 * @param line Line index in <code>lines</code>
+	 * @param piece Slot + 1 of a player
+	 * @param except Cell index counted as holding <code>piece</code>, NO_MOVE for none
+	 * @return All cells of the line hold <code>piece</code>
+	 */
+	/*@ pure @*/ private boolean isLineOwnedBy(int line, int piece, int except) {
+		for (int i = 0; i < winningLength; i++) {
+			int cell = lines.getCell(line, i);
+			if (cell != except && cells[cell] != piece) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/** 
+	 * Returns the index of the tower at (<code>x</code>, <code>y</code>).
+	 * @param x X position
+	 * @param y Y position
+	 * @return Tower index
+	 */
+	//@ requires isValidTower(x,y);
+	/*@ pure @*/ private int towerIndex(int x, int y) {
+		return (x - 1) + (y - 1) * xDim;
+	}
+	
+	/** 
+	 * Returns the index of the cell at (<code>x</code>, <code>y</code>, <code>z</code>) in 
+	 * <code>cells</code>, which are stored level by level.
+	 * @param x X position
+	 * @param y Y position
+	 * @param z Z position
+	 * @return Cell index
+	 */
+	//@ requires isValidTower(x,y) && z > 0 && z <= levels;
+	/*@ pure @*/ private int cellIndex(int x, int y, int z) {
+		return towerIndex(x, y) + (z - 1) * towers;
+	}
+	
+	// <------ Views ------>
+	
+	/** 
+	 * Read-only list of the owners of a run of pieces, backed by a copy of the stored pieces. 
+	 * The <code>Integer</code> owners are only created when they are read.
+	 */
+	private static class TowerView extends AbstractList<Integer> {
+		
+		private final byte[] pieces;
+		private final int from;
+		private final int size;
+		private final int[] playerIDs;
+		
+		/** 
+		 * Creates a view of <code>size</code> pieces starting at <code>from</code>.
+		 * @param pieces Slot + 1 of the owners of the pieces
+		 * @param from Index of the first piece
+		 * @param size Number of pieces
+		 * @param playerIDs IDs of the players by slot
+		 */
+		private TowerView(byte[] pieces, int from, int size, int[] playerIDs) {
+			this.pieces = pieces;
+			this.from = from;
+			this.size = size;
+			this.playerIDs = playerIDs;
+		}
+		
+		@Override
+		public Integer get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return playerIDs[pieces[from + index] - 1];
+		}
+		
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+	
+	/** 
+	 * Read-only list of the towers of a board by tower index, backed by a copy of the stored 
+	 * pieces, tower by tower. The view of a tower is only created when it is read.
+	 */
+	private static class BoardView extends AbstractList<List<Integer>> {
+		
+		private final byte[] pieces;
+		private final int[] offsets;
+		private final int[] playerIDs;
+		
+		/** 
+		 * Creates a view of the towers stored one after another in <code>pieces</code>.
+		 * @param pieces Slot + 1 of the owners of all pieces, tower by tower
+		 * @param offsets Index of the first piece of every tower, followed by the piece count
+		 * @param playerIDs IDs of the players by slot
+		 */
+		private BoardView(byte[] pieces, int[] offsets, int[] playerIDs) {
+			this.pieces = pieces;
+			this.offsets = offsets;
+			this.playerIDs = playerIDs;
+		}
+		
+		@Override
+		public List<Integer> get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+			return new TowerView(pieces, offsets[index], offsets[index + 1] - offsets[index], 
+					playerIDs);
+		}
+		
+		@Override
+		public int size() {
+			return offsets.length - 1;
 		}
 	}
 }
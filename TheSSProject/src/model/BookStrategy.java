@@ -0,0 +1,90 @@
+package model;
+
+public class BookStrategy implements Strategy {
+
+	// <------ Instance variables ------>
+
+	private final OpeningBook book;
+	private final Strategy strategy;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates a strategy playing the moves of an opening book, and those of another strategy
+	 * once the game has left the book.
+	 * @param book Opening book to play from
+	 * @param strategy Strategy to use for positions that are not in the book
+	 */
+	//@ requires book != null && strategy != null;
+	public BookStrategy(OpeningBook book, Strategy strategy) {
+		this.book = book;
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Creates a strategy playing the moves of the default opening book, and those of another
+	 * strategy once the game has left the book.
+	 * @param strategy Strategy to use for positions that are not in the book
+	 */
+	//@ requires strategy != null;
+	public BookStrategy(Strategy strategy) {
+		this(OpeningBook.getDefault(), strategy);
+	}
+
+	// <------ Queries ------>
+
+	/**
+	 * Get the name of the strategy, the name of the strategy used after the book.
+	 * @return name of the strategy.
+	 */
+	@Override
+	public String getName() {
+		return strategy.getName();
+	}
+
+	/**
+	 * Determines the next move from the opening book, or by the other strategy if the position
+	 * is not in the book.
+	 * @param board Board the game is played on.
+	 * @param id player ID of the player using this strategy
+	 * @return the coordinates of the next move following this strategy
+	 */
+	//@ requires board != null && !board.isFull();
+	//@ ensures board.isValidMove(\result.getX(),\result.getY());
+	@Override
+	public TowerCoordinates determineMove(Board board, int id) {
+		int move = book.lookup(board);
+		if (move >= 0) {
+			return board.getTowerCoordinates(move);
+		}
+		return strategy.determineMove(board, id);
+	}
+
+	/**
+	 * Determines the next move from the opening book, or by the other strategy before the
+	 * deadline if the position is not in the book.
+	 * @param board Board the game is played on.
+	 * @param id player ID of the player using this strategy
+	 * @param deadline Deadline for the move
+	 * @return the coordinates of the next move following this strategy
+	 */
+	//@ requires board != null && !board.isFull() && deadline != null;
+	//@ ensures board.isValidMove(\result.getX(),\result.getY());
+	@Override
+	public TowerCoordinates determineMove(Board board, int id, Deadline deadline) {
+		int move = book.lookup(board);
+		if (move >= 0) {
+			return board.getTowerCoordinates(move);
+		}
+		return strategy.determineMove(board, id, deadline);
+	}
+
+	/**
+	 * Returns the number of positions the strategy used after the book has searched.
+	 * @return Number of positions searched
+	 */
+	@Override
+	public long getPositionsSearched() {
+		return strategy.getPositionsSearched();
+	}
+}
@@ -2,9 +2,15 @@ package model;
 
 public class ComputerPlayer extends Player {
 	
+	// <------ Constants ------>
+	
+	public static final long NO_TIME_LIMIT = 0;
+	
 	// <------ Instance variables ------>	
 	
 	Strategy strategy;
+	// Time in milliseconds a move may take, NO_TIME_LIMIT if the strategy decides
+	private final long moveTime;
 
 	// <------ Constructors ------>
 	
@@ -17,8 +23,22 @@ public class ComputerPlayer extends Player {
 	//@ requires strategy != null;
 	//@ requires id>=0;
 	public ComputerPlayer(Strategy strategy, int id) {
+		this(strategy, id, NO_TIME_LIMIT);
+	}
+	
+	/**
+	 * Creates a new computer player with given strategy and player ID, that determines every 
+	 * move within the given time. It gets the name of the strategy.
+	 * @param strategy Strategy the computer Player plays with
+	 * @param id Player ID the computer Player gets
+	 * @param moveTime Time in milliseconds a move may take, NO_TIME_LIMIT for no limit
+	 */
+	//@ requires strategy != null;
+	//@ requires id>=0 && moveTime >= 0;
+	public ComputerPlayer(Strategy strategy, int id, long moveTime) {
 		super(strategy.getName(), id);
 		this.strategy = strategy;
+		this.moveTime = moveTime;
 	}
 	
 	/**
@@ -29,12 +49,22 @@ public class ComputerPlayer extends Player {
 	public ComputerPlayer(int id) {
 		super("Randi", id);
 		this.strategy = new RandomStrategy();
+		this.moveTime = NO_TIME_LIMIT;
 	}
 	
 	// <------ Queries ------>
 	
 	/**
-	 * Determines the coordinates of the tower for the next move.
+	 * Returns the time a move of this player may take.
+	 * @return Time in milliseconds, NO_TIME_LIMIT if there is no limit
+	 */
+	/*@ pure @*/ public long getMoveTime() {
+		return moveTime;
+	}
+	
+	/**
+	 * Determines the coordinates of the tower for the next move, within the move time of this 
+	 * player if it has one.
 	 * 
 	 * @param board current board the game is played on.
 	 * @return Coordinates of the tower for the next move.
@@ -42,7 +72,28 @@ public class ComputerPlayer extends Player {
 	//@ requires board != null && !board.isFull();
 	//@ ensures board.isValidMove(\result.getX(),\result.getY());
 	public TowerCoordinates determineMove(Board board) {
-		return strategy.determineMove(board, this.playerID);
+		if (moveTime == NO_TIME_LIMIT) {
+			return strategy.determineMove(board, this.playerID);
+		}
+		return determineMove(board, new Deadline(moveTime));
+	} 
+	
+	/**
+	 * Determines the coordinates of the tower for the next move before the given deadline, or 
+	 * the move time of this player if that ends earlier. Cancelling the deadline makes the 
+	 * strategy return its best move so far.
+	 * 
+	 * @param board current board the game is played on.
+	 * @param deadline Deadline for the move.
+	 * @return Coordinates of the tower for the next move.
+	 */
+	//@ requires board != null && !board.isFull() && deadline != null;
+	//@ ensures board.isValidMove(\result.getX(),\result.getY());
+	public TowerCoordinates determineMove(Board board, Deadline deadline) {
+		if (moveTime != NO_TIME_LIMIT) {
+			deadline = deadline.within(moveTime);
+		}
+		return strategy.determineMove(board, this.playerID, deadline);
 	} 
 
 }
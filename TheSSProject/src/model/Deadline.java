@@ -0,0 +1,97 @@
+package model;
+
+/**
+ * Point in time by which a strategy has to return its move, see
+ * <code>Strategy.determineMove(Board, int, Deadline)</code>. A deadline can also be cancelled,
+ * which makes searching strategies return their best move so far at once. Deadlines created by
+ * <code>within(long)</code> are cancelled together with the deadline they were created from.
+ */
+public class Deadline {
+
+	// <------ Constants ------>
+
+	public static final long NANOS_PER_MILLI = 1000000L;
+	// Longer times are cut down, so adding them to System.nanoTime() can't overflow
+	public static final long MAX_MILLIS = Long.MAX_VALUE / NANOS_PER_MILLI / 4;
+
+	// <------ Instance variables ------>
+
+	// Value of System.nanoTime() at which this deadline passes
+	private final long end;
+	private final Deadline parent;
+	private volatile boolean cancelled;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates a deadline passing the given time from now.
+	 * @param millis Time in milliseconds until the deadline
+	 */
+	//@ requires millis >= 0;
+	public Deadline(long millis) {
+		this(System.nanoTime() + Math.min(millis, MAX_MILLIS) * NANOS_PER_MILLI, null);
+	}
+
+	/**
+	 * Creates a deadline passing at the given time, cancelled with its parent.
+	 * @param end Value of System.nanoTime() at which the deadline passes
+	 * @param parent Deadline this deadline is created from, null if none
+	 */
+	private Deadline(long end, Deadline parent) {
+		this.end = end;
+		this.parent = parent;
+	}
+
+	// <------ Queries ------>
+
+	/**
+	 * Checks whether this deadline, or the deadline it was created from, has been cancelled.
+	 * @return Deadline is cancelled
+	 */
+	/*@ pure @*/ public boolean isCancelled() {
+		return cancelled || (parent != null && parent.isCancelled());
+	}
+
+	/**
+	 * Checks whether this deadline has passed or has been cancelled.
+	 * @return No more time is left
+	 */
+	/*@ pure @*/ public boolean isExpired() {
+		return isCancelled() || System.nanoTime() - end >= 0;
+	}
+
+	/**
+	 * Returns the time left until this deadline.
+	 * @return Time in milliseconds, 0 if the deadline has passed or has been cancelled
+	 */
+	//@ ensures \result >= 0;
+	/*@ pure @*/ public long getRemainingMillis() {
+		if (isCancelled()) {
+			return 0;
+		}
+		return Math.max(0, (end - System.nanoTime()) / NANOS_PER_MILLI);
+	}
+
+	/**
+	 * Creates a deadline passing the given time from now, or at this deadline if that is
+	 * earlier. The new deadline is cancelled when this deadline is cancelled, but cancelling
+	 * the new deadline leaves this one alone.
+	 * @param millis Time in milliseconds until the new deadline
+	 * @return The new deadline
+	 */
+	//@ requires millis >= 0;
+	public Deadline within(long millis) {
+		long limit = System.nanoTime() + Math.min(millis, MAX_MILLIS) * NANOS_PER_MILLI;
+		return new Deadline(limit - end < 0 ? limit : end, this);
+	}
+
+	// <------ Commands ------>
+
+	/**
+	 * Cancels this deadline and all deadlines created from it.
+	 */
+	//@ ensures isCancelled() && isExpired();
+	public void cancel() {
+		cancelled = true;
+	}
+}
@@ -0,0 +1,455 @@
+package model;
+
+import java.util.Arrays;
+
+public class MonteCarloStrategy implements Strategy {
+
+	// <------ Constants ------>
+
+	public static final long DEFAULT_TIME_BUDGET = 1000;
+	public static final int MAX_NODES = 1 << 21;
+	public static final double EXPLORATION = Math.sqrt(2);
+
+	private static final int INITIAL_NODES = 1 << 12;
+	private static final int ITERATIONS_PER_CLOCK_CHECK = 4;
+	private static final int NO_NODE = -1;
+	private static final float WIN = 1;
+	private static final float DRAW = 0.5f;
+	// Playouts on boards with unlimited height end in a draw after this many moves per tower
+	private static final int PLAYOUT_MOVES_PER_TOWER = 4;
+
+	// <------ Instance variables ------>
+
+	private final long timeBudget;
+	// The tree: children of a node are stored next to each other, the move of a node is the
+	// tower index played to reach it and its score counts wins of the player making that move
+	private int[] nodeMove;
+	private int[] firstChild;
+	private int[] childCount;
+	private int[] visits;
+	private float[] scores;
+	private int nodeCount;
+	private int root;
+	// Moves leading to the root, to find the root again in the next turn
+	private int[] rootMoves;
+	private int rootMoveCount;
+	private int rootXDim;
+	private int rootYDim;
+	private int rootZDim;
+	private int[] path;
+	private long random;
+	// Positions reached by the tree walks and playouts of all moves so far
+	private long positions;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates a Monte Carlo tree search strategy with the default time budget per move.
+	 */
+	public MonteCarloStrategy() {
+		this(DEFAULT_TIME_BUDGET);
+	}
+
+	/**
+	 * Creates a Monte Carlo tree search strategy with the given time budget per move.
+	 * @param timeBudget Time in milliseconds this strategy may search for a move
+	 */
+	//@ requires timeBudget > 0;
+	public MonteCarloStrategy(long timeBudget) {
+		this.timeBudget = timeBudget;
+		this.random = System.nanoTime() | 1;
+		this.path = new int[64];
+	}
+
+	// <------ Queries ------>
+
+	/**
+	 * Get the name of the strategy.
+	 * @return name of the strategy.
+	 */
+	@Override
+	public String getName() {
+		return "Monty";
+	}
+
+	/**
+	 * Returns the time budget per move of this strategy.
+	 * @return Time in milliseconds this strategy may search for a move
+	 */
+	/*@ pure @*/ public long getTimeBudget() {
+		return timeBudget;
+	}
+
+	/**
+	 * Returns the number of positions reached by the tree walks and playouts of all moves so far.
+	 * @return Number of positions searched
+	 */
+	@Override
+	public synchronized long getPositionsSearched() {
+		return positions;
+	}
+
+	/**
+	 * Determines the next move by Monte Carlo tree search: until the time budget is used up, a
+	 * path through the tree of moves is selected by UCT, the tree is expanded at its end and a
+	 * random game is played from there on a search copy of the board. The most visited move is
+	 * returned. Winning moves and moves blocking a win of the opponent are played without
+	 * searching. The part of the tree below the moves made since the last call is kept, so
+	 * this strategy should not be shared by players.
+	 * @param board Board the game is played on.
+	 * @param id player ID of the player using this strategy
+	 * @return the coordinates of the next move following this strategy
+	 */
+	//@ requires board != null && !board.isFull();
+	//@ ensures board.isValidMove(\result.getX(),\result.getY());
+	@Override
+	public TowerCoordinates determineMove(Board board, int id) {
+		return determineMove(board, id, new Deadline(timeBudget));
+	}
+
+	/**
+	 * Determines the next move like <code>determineMove(Board, int)</code>, searching until the
+	 * time budget is used up or the deadline passes, whichever comes first. If the deadline is
+	 * cancelled the most visited move so far is returned at once.
+	 * @param board Board the game is played on.
+	 * @param id player ID of the player using this strategy
+	 * @param deadline Deadline for the move
+	 * @return the coordinates of the next move following this strategy
+	 */
+	//@ requires board != null && !board.isFull() && deadline != null;
+	//@ ensures board.isValidMove(\result.getX(),\result.getY());
+	@Override
+	public synchronized TowerCoordinates determineMove(Board board, int id, Deadline deadline) {
+		Deadline limit = deadline.within(timeBudget);
+		Board search = board.searchCopy();
+		int opponent = findOpponent(search, id);
+		int forced = findForcedMove(search, id, opponent);
+		if (forced != NO_NODE) {
+			return board.getTowerCoordinates(forced);
+		}
+		findRoot(search);
+		if (childCount[root] == 0) {
+			expand(root, search);
+		}
+		for (int i = 0; i % ITERATIONS_PER_CLOCK_CHECK != 0 || !limit.isExpired(); i++) {
+			iterate(search, id, opponent);
+		}
+		int best = NO_NODE;
+		for (int child = firstChild[root]; child < firstChild[root] + childCount[root]; child++) {
+			if (best == NO_NODE || visits[child] > visits[best]) {
+				best = child;
+			}
+		}
+		if (best == NO_NODE) {
+			// The tree is full, any move will do
+			return board.getTowerCoordinates(nextAvailableTower(search, -1));
+		}
+		return board.getTowerCoordinates(nodeMove[best]);
+	}
+
+	// <------ Internal workings ------>
+
+	/**
+	 * Runs one iteration of the search: selection, expansion, playout and backpropagation. The
+	 * board is restored afterwards.
+	 * @param board Search board in the root position
+	 * @param me ID of the player to find a move for
+	 * @param opponent ID of the opponent
+	 */
+	private void iterate(Board board, int me, int opponent) {
+		int node = root;
+		int depth = 0;
+		int player = me;
+		int result = NO_NODE;
+		path[0] = root;
+		while (true) {
+			if (childCount[node] == 0) {
+				if (visits[node] > 0 || node == root) {
+					expand(node, board);
+				}
+				if (childCount[node] == 0) {
+					break;
+				}
+			}
+			node = select(node);
+			board.applyMove(nodeMove[node], player);
+			depth++;
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, depth * 2);
+			}
+			path[depth] = node;
+			if (board.lastMoveHasWon()) {
+				result = player;
+				break;
+			}
+			player = player == me ? opponent : me;
+			if (visits[node] == 0) {
+				break;
+			}
+		}
+		if (result == NO_NODE && board.getMoveCount() < playoutLimit(board)
+				&& !board.isFull()) {
+			result = playout(board, player, player == me ? opponent : me);
+		}
+		positions += depth;
+		// Backpropagation, the player who made the move into a node scores its wins
+		int mover = depth % 2 == 1 ? me : opponent;
+		for (int i = depth; i >= 0; i--) {
+			node = path[i];
+			visits[node]++;
+			if (result == mover) {
+				scores[node] += WIN;
+			} else if (result == NO_NODE) {
+				scores[node] += DRAW;
+			}
+			mover = mover == me ? opponent : me;
+			if (i > 0) {
+				board.undoMove();
+			}
+		}
+	}
+
+	/**
+	 * Selects the child of a node with the highest UCT value, children that were never visited
+	 * first.
+	 * @param node Node with children
+	 * @return Selected child
+	 */
+	private int select(int node) {
+		double logVisits = Math.log(Math.max(1, visits[node]));
+		int best = NO_NODE;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+			if (visits[child] == 0) {
+				return child;
+			}
+			double value = scores[child] / visits[child]
+					+ EXPLORATION * Math.sqrt(logVisits / visits[child]);
+			if (value > bestValue) {
+				bestValue = value;
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Adds a child for every available tower to a node, unless the tree is full.
+	 * @param node Node without children
+	 * @param board Search board in the position of the node
+	 */
+	private void expand(int node, Board board) {
+		int towers = board.xDim * board.yDim;
+		if (nodeCount + towers > nodeMove.length) {
+			if (nodeMove.length >= MAX_NODES) {
+				return;
+			}
+			grow(Math.min(MAX_NODES, Math.max(nodeMove.length * 2, nodeCount + towers)));
+			if (nodeCount + towers > nodeMove.length) {
+				return;
+			}
+		}
+		firstChild[node] = nodeCount;
+		for (int tower = 0; tower < towers; tower++) {
+			if (board.isAvailableTower(tower)) {
+				initNode(nodeCount, tower);
+				nodeCount++;
+			}
+		}
+		childCount[node] = nodeCount - firstChild[node];
+	}
+
+	/**
+	 * Plays random moves until a player wins, the board is full or the playout limit is
+	 * reached, then takes them back.
+	 * @param board Search board
+	 * @param player Player to move
+	 * @param other Other player
+	 * @return ID of the winner, -1 for a draw
+	 */
+	private int playout(Board board, int player, int other) {
+		int towers = board.xDim * board.yDim;
+		int limit = playoutLimit(board);
+		int start = board.getMoveCount();
+		int winner = NO_NODE;
+		while (board.getMoveCount() < limit) {
+			int tower = (int) ((nextRandom() >>> 33) % towers);
+			if (!board.isAvailableTower(tower)) {
+				tower = nextAvailableTower(board, tower);
+				if (tower == NO_NODE) {
+					break;
+				}
+			}
+			board.applyMove(tower, player);
+			if (board.lastMoveHasWon()) {
+				winner = player;
+				break;
+			}
+			int swap = player;
+			player = other;
+			other = swap;
+		}
+		positions += board.getMoveCount() - start;
+		while (board.getMoveCount() > start) {
+			board.undoMove();
+		}
+		return winner;
+	}
+
+	/**
+	 * Returns the first available tower after the given tower, wrapping around.
+	 * @param board A board
+	 * @param tower Tower index to start after, -1 to start at the first tower
+	 * @return Tower index, -1 if the board is full
+	 */
+	private static int nextAvailableTower(Board board, int tower) {
+		int towers = board.xDim * board.yDim;
+		for (int i = 1; i <= towers; i++) {
+			int next = (tower + i) % towers;
+			if (board.isAvailableTower(next)) {
+				return next;
+			}
+		}
+		return NO_NODE;
+	}
+
+	/**
+	 * Returns the number of moves after which a playout ends.
+	 * @param board A board
+	 * @return Move count at which playouts stop
+	 */
+	private static int playoutLimit(Board board) {
+		int towers = board.xDim * board.yDim;
+		if (board.zDim == Board.UNLIMITED_Z) {
+			return board.getMoveCount() + towers * Math.max(PLAYOUT_MOVES_PER_TOWER,
+					board.winningLength);
+		}
+		return towers * board.zDim;
+	}
+
+	/**
+	 * Makes the node of the position on the board the root, keeping the tree below it if the
+	 * board continues the game of the previous search and the tree is less than half full.
+	 * Otherwise the tree starts over with the initial capacity.
+	 * @param board Search board
+	 */
+	private void findRoot(Board board) {
+		boolean reuse = nodeMove != null && board.xDim == rootXDim && board.yDim == rootYDim
+				&& board.zDim == rootZDim && board.getMoveCount() >= rootMoveCount
+				&& nodeCount <= MAX_NODES / 2;
+		for (int i = 0; reuse && i < rootMoveCount; i++) {
+			reuse = board.getMove(i) == rootMoves[i];
+		}
+		for (int i = rootMoveCount; reuse && i < board.getMoveCount(); i++) {
+			int child = NO_NODE;
+			for (int c = firstChild[root]; c < firstChild[root] + childCount[root]; c++) {
+				if (nodeMove[c] == board.getMove(i)) {
+					child = c;
+				}
+			}
+			reuse = child != NO_NODE;
+			root = child;
+		}
+		if (!reuse) {
+			if (nodeMove == null || nodeMove.length > INITIAL_NODES) {
+				// A discarded tree gives its memory back, the next one grows as it needs
+				nodeMove = null;
+				grow(INITIAL_NODES);
+			}
+			nodeCount = 0;
+			root = 0;
+			initNode(root, NO_NODE);
+			nodeCount++;
+		}
+		rootXDim = board.xDim;
+		rootYDim = board.yDim;
+		rootZDim = board.zDim;
+		rootMoveCount = board.getMoveCount();
+		if (rootMoves == null || rootMoves.length < rootMoveCount) {
+			rootMoves = new int[Math.max(INITIAL_NODES, rootMoveCount * 2)];
+		}
+		for (int i = 0; i < rootMoveCount; i++) {
+			rootMoves[i] = board.getMove(i);
+		}
+	}
+
+	/**
+	 * Resets a node to a leaf that was never visited.
+	 * @param node Node
+	 * @param tower Tower index of the move leading to the node
+	 */
+	private void initNode(int node, int tower) {
+		nodeMove[node] = tower;
+		firstChild[node] = NO_NODE;
+		childCount[node] = 0;
+		visits[node] = 0;
+		scores[node] = 0;
+	}
+
+	/**
+	 * Increases the capacity of the tree.
+	 * @param capacity New number of nodes
+	 */
+	private void grow(int capacity) {
+		if (nodeMove == null) {
+			nodeMove = new int[capacity];
+			firstChild = new int[capacity];
+			childCount = new int[capacity];
+			visits = new int[capacity];
+			scores = new float[capacity];
+		} else {
+			nodeMove = Arrays.copyOf(nodeMove, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			childCount = Arrays.copyOf(childCount, capacity);
+			visits = Arrays.copyOf(visits, capacity);
+			scores = Arrays.copyOf(scores, capacity);
+		}
+	}
+
+	/**
+	 * Returns a winning move, or else the only move blocking a win of the opponent.
+	 * @param board A board
+	 * @param me ID of the player to find a move for
+	 * @param opponent ID of the opponent
+	 * @return Tower index of the move, -1 if there is no such move
+	 */
+	private static int findForcedMove(Board board, int me, int opponent) {
+		int block = NO_NODE;
+		for (int tower = 0; tower < board.xDim * board.yDim; tower++) {
+			if (board.isAvailableTower(tower)) {
+				if (board.isWinningMove(tower, me)) {
+					return tower;
+				} else if (block == NO_NODE && board.isWinningMove(tower, opponent)) {
+					block = tower;
+				}
+			}
+		}
+		return block;
+	}
+
+	/**
+	 * Determines the ID of the opponent, any other ID if the opponent has not moved yet.
+	 * @param board A board
+	 * @param me ID of the player to find a move for
+	 * @return ID of the opponent
+	 */
+	private static int findOpponent(Board board, int me) {
+		for (int i = 0; i < board.getPlayerCount(); i++) {
+			if (board.getPlayerID(i) != me) {
+				return board.getPlayerID(i);
+			}
+		}
+		return me + 1;
+	}
+
+	/**
+	 * Returns the next number of the xorshift generator used for playouts.
+	 * @return Random number
+	 */
+	private long nextRandom() {
+		random ^= random << 13;
+		random ^= random >>> 7;
+		random ^= random << 17;
+		return random;
+	}
+}
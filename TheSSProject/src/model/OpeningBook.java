@@ -0,0 +1,298 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import exc.IllegalBoardConstructorArgumentsException;
+
+/**
+ * Precomputed moves for the first plies of games on one board geometry, keyed by the canonical
+ * hash of the position (see <code>Board.getCanonicalHash()</code>), so a position is found
+ * however the board is rotated or reflected. The book is stored as a binary file: a header with
+ * the geometry followed by the entries sorted by hash, each a hash and a tower index in the
+ * orientation of the canonical position.
+ */
+public class OpeningBook {
+
+	// <------ Constants ------>
+
+	public static final String DEFAULT_FILE = "openings.book";
+	public static final String FILE_PROPERTY = "connect4.openingBook";
+	public static final int DEFAULT_PLIES = 4;
+	public static final long DEFAULT_SEARCH_TIME = 2000;
+
+	private static final int MAGIC = 0x43344F42;
+	private static final int VERSION = 1;
+	private static final int NO_MOVE = -1;
+
+	private static OpeningBook defaultBook;
+
+	// <------ Instance variables ------>
+
+	public final int xDim;
+	public final int yDim;
+	public final int zDim;
+	public final int winningLength;
+	private final long[] hashes;
+	private final int[] moves;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates a book from entries sorted by hash.
+	 * @param board Board with the geometry of the book
+	 * @param hashes Canonical hashes of the positions, sorted
+	 * @param moves Tower indices of the moves in the canonical orientation
+	 */
+	//@ requires hashes.length == moves.length;
+	private OpeningBook(Board board, long[] hashes, int[] moves) {
+		this(board.xDim, board.yDim, board.zDim, board.winningLength, hashes, moves);
+	}
+
+	/**
+	 * Creates a book from entries sorted by hash.
+	 * @param xDim X dimension of the board
+	 * @param yDim Y dimension of the board
+	 * @param zDim Z dimension of the board
+	 * @param winningLength Connected pieces required to win the game
+	 * @param hashes Canonical hashes of the positions, sorted
+	 * @param moves Tower indices of the moves in the canonical orientation
+	 */
+	//@ requires hashes.length == moves.length;
+	private OpeningBook(int xDim, int yDim, int zDim, int winningLength, long[] hashes,
+			int[] moves) {
+		this.xDim = xDim;
+		this.yDim = yDim;
+		this.zDim = zDim;
+		this.winningLength = winningLength;
+		this.hashes = hashes;
+		this.moves = moves;
+	}
+
+	// <------ Queries ------>
+
+	/**
+	 * Returns the number of positions in this book.
+	 * @return Number of positions
+	 */
+	/*@ pure @*/ public int size() {
+		return hashes.length;
+	}
+
+	/**
+	 * Looks up the move for the position on the board.
+	 * @param board A board
+	 * @return Tower index of the move, -1 if the position is not in this book
+	 */
+	//@ requires board != null;
+	//@ ensures \result == -1 || board.isAvailableTower(\result);
+	/*@ pure @*/ public int lookup(Board board) {
+		if (hashes.length == 0 || board.xDim != xDim || board.yDim != yDim
+				|| board.zDim != zDim || board.winningLength != winningLength) {
+			return NO_MOVE;
+		}
+		int symmetry = canonicalSymmetry(board);
+		int index = Arrays.binarySearch(hashes, board.getSymmetricHash(symmetry));
+		if (index < 0) {
+			return NO_MOVE;
+		}
+		for (int tower = 0; tower < xDim * yDim; tower++) {
+			if (board.transformTower(tower, symmetry) == moves[index]) {
+				return board.isAvailableTower(tower) ? tower : NO_MOVE;
+			}
+		}
+		return NO_MOVE;
+	}
+
+	/**
+	 * Writes this book to a stream.
+	 * @param out Stream to write to, it is not closed
+	 * @throws IOException if writing fails
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(xDim);
+		data.writeInt(yDim);
+		data.writeInt(zDim);
+		data.writeInt(winningLength);
+		data.writeInt(hashes.length);
+		for (int i = 0; i < hashes.length; i++) {
+			data.writeLong(hashes[i]);
+			data.writeInt(moves[i]);
+		}
+		data.flush();
+	}
+
+	/**
+	 * Reads a book from a stream.
+	 * @param in Stream to read from, it is not closed
+	 * @return The book
+	 * @throws IOException if reading fails or the stream does not hold a book
+	 */
+	public static OpeningBook read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+			throw new IOException("Not an opening book of this version");
+		}
+		int xDim = data.readInt();
+		int yDim = data.readInt();
+		int zDim = data.readInt();
+		int winningLength = data.readInt();
+		int size = data.readInt();
+		if (size < 0) {
+			throw new IOException("Invalid size of opening book: " + size);
+		}
+		long[] hashes = new long[size];
+		int[] moves = new int[size];
+		for (int i = 0; i < size; i++) {
+			hashes[i] = data.readLong();
+			moves[i] = data.readInt();
+			if (moves[i] < 0 || moves[i] >= xDim * yDim
+					|| (i > 0 && hashes[i] <= hashes[i - 1])) {
+				throw new IOException("Invalid entry " + i + " of opening book");
+			}
+		}
+		return new OpeningBook(xDim, yDim, zDim, winningLength, hashes, moves);
+	}
+
+	/**
+	 * Returns the book shared by all strategies of this program, read the first time from the
+	 * file named by the system property <code>FILE_PROPERTY</code>, or else from the book
+	 * <code>DEFAULT_FILE</code> shipped next to this class. If the book is missing or can't be
+	 * read, a warning is printed and the book is empty.
+	 * @return The default book
+	 */
+	public static synchronized OpeningBook getDefault() {
+		if (defaultBook == null) {
+			String file = System.getProperty(FILE_PROPERTY);
+			String source = file == null ? "resource " + DEFAULT_FILE : "file " + file;
+			try (InputStream in = file == null ? OpeningBook.class.getResourceAsStream(DEFAULT_FILE)
+					: new FileInputStream(file)) {
+				if (in == null) {
+					throw new IOException("not found");
+				}
+				defaultBook = read(in);
+			} catch (IOException e) {
+				System.err.println("Opening book " + source + " can't be read (" + e.getMessage() 
+						+ "), playing without it");
+				defaultBook = new OpeningBook(Board.DEFAULT_DIM, Board.DEFAULT_DIM,
+						Board.DEFAULT_DIM, Board.DEFAULT_WIN, new long[0], new int[0]);
+			}
+		}
+		return defaultBook;
+	}
+
+	/**
+	 * Creates a book by letting a strategy choose the move in every position reachable in the
+	 * given number of plies from the board, for both players. Of moves that symmetries map onto
+	 * each other only one is followed.
+	 * @param board Board to start from, it is not changed
+	 * @param strategy Strategy choosing the moves of the book
+	 * @param plies Number of plies to explore
+	 * @return The book
+	 */
+	//@ requires board != null && strategy != null && plies >= 0;
+	public static OpeningBook generate(Board board, Strategy strategy, int plies) {
+		SortedMap<Long, Integer> entries = new TreeMap<Long, Integer>();
+		explore(board.searchCopy(), strategy, plies, entries);
+		long[] hashes = new long[entries.size()];
+		int[] moves = new int[entries.size()];
+		int i = 0;
+		for (Map.Entry<Long, Integer> entry : entries.entrySet()) {
+			hashes[i] = entry.getKey();
+			moves[i] = entry.getValue();
+			i++;
+		}
+		return new OpeningBook(board, hashes, moves);
+	}
+
+	/**
+	 * Generates the default book: the first <code>DEFAULT_PLIES</code> plies of the default
+	 * rules, searched by the alpha-beta strategy with all processors. The book shipped with
+	 * this program is generated with the default arguments and stored as
+	 * <code>model/openings.book</code> in the source tree.
+	 * @param args Optional: file to write to, number of plies and search time per position in
+	 * milliseconds
+	 * @throws IOException if the book can't be written
+	 * @throws IllegalBoardConstructorArgumentsException if the default board can't be created
+	 */
+	public static void main(String[] args) throws IOException,
+			IllegalBoardConstructorArgumentsException {
+		String file = args.length > 0 ? args[0] : DEFAULT_FILE;
+		int plies = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PLIES;
+		long time = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEARCH_TIME;
+		Strategy strategy = new AlphaBetaStrategy(time, new TranspositionTable(20),
+				Runtime.getRuntime().availableProcessors());
+		OpeningBook book = generate(new Board(), strategy, plies);
+		try (OutputStream out = new FileOutputStream(file)) {
+			book.write(out);
+		}
+		System.out.println("Wrote " + book.size() + " positions to " + file);
+	}
+
+	// <------ Internal workings ------>
+
+	/**
+	 * Adds the position on the board and all positions reachable from it to the entries.
+	 * @param board Search board, restored when this method returns
+	 * @param strategy Strategy choosing the moves of the book
+	 * @param plies Number of plies still to explore
+	 * @param entries Moves in the canonical orientation by canonical hash, found so far
+	 */
+	private static void explore(Board board, Strategy strategy, int plies,
+			SortedMap<Long, Integer> entries) {
+		if (plies == 0 || board.hasWinner() || board.isFull()) {
+			return;
+		}
+		int symmetry = canonicalSymmetry(board);
+		long hash = board.getSymmetricHash(symmetry);
+		if (entries.containsKey(hash)) {
+			return;
+		}
+		int turn = board.getMoveCount() % 2;
+		int player = turn < board.getPlayerCount() ? board.getPlayerID(turn) : turn;
+		TowerCoordinates move = strategy.determineMove(board, player);
+		entries.put(hash, board.transformTower(board.getTowerIndex(move.getX(), move.getY()),
+				symmetry));
+		int symmetries = board.getSymmetries();
+		for (int tower = 0; tower < board.xDim * board.yDim; tower++) {
+			if (board.isAvailableTower(tower) && board.isDistinctMove(tower, symmetries)) {
+				board.applyMove(tower, player);
+				explore(board, strategy, plies - 1, entries);
+				board.undoMove();
+			}
+		}
+	}
+
+	/**
+	 * Returns a symmetry mapping the position on the board to the position with the canonical
+	 * hash.
+	 * @param board A board
+	 * @return Number of the symmetry
+	 */
+	/*@ pure @*/ private static int canonicalSymmetry(Board board) {
+		int best = 0;
+		long canonical = board.getHash();
+		for (int symmetry = 1; symmetry < board.getSymmetryCount(); symmetry++) {
+			long hash = board.getSymmetricHash(symmetry);
+			if (hash < canonical) {
+				canonical = hash;
+				best = symmetry;
+			}
+		}
+		return best;
+	}
+}
@@ -1,10 +1,14 @@
 package model;
 
-import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class RandomStrategy implements Strategy {
 
+	// <------ Instance variables ------>
+	
+	// Reused for the available towers of every move
+	private int[] buffer = new int[0];
+	
 	// <------ Queries ------>
 	
 	/**
@@ -26,10 +30,12 @@ public class RandomStrategy implements Strategy {
 	//@ requires id >= 0;
 	//@ ensures board.isValidMove(\result.getX(),\result.getY());
 	@Override
-	public TowerCoordinates determineMove(Board board, int id) {
-		List<TowerCoordinates> availableTowers = board.getAvailableTowers();
-		Random random = new Random();
-		return availableTowers.get(random.nextInt(availableTowers.size()));
+	public synchronized TowerCoordinates determineMove(Board board, int id) {
+		if (buffer.length < board.xDim * board.yDim) {
+			buffer = new int[board.xDim * board.yDim];
+		}
+		int count = board.getAvailableTowers(buffer);
+		return board.getTowerCoordinates(buffer[ThreadLocalRandom.current().nextInt(count)]);
 	}
  
 }
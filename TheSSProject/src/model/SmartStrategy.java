@@ -1,11 +1,18 @@
 package model;
 
-import java.util.List;
-
-import exc.IllegalCoordinatesException;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class SmartStrategy implements Strategy {
 
+	// <------ Constants ------>
+
+	private static final int NO_MOVE = -1;
+
+	// <------ Instance variables ------>
+
+	// Reused for the available towers of every move
+	private int[] buffer = new int[0];
+
 	// <------ Queries ------>
 	/**
 	 * Get the name of the strategy.
@@ -17,45 +24,108 @@ public class SmartStrategy implements Strategy {
 	}
 
 	/**
-	 * Determine the next move by a smart strategy which returns 
-	 * the winning move in case the player can win in the next turn 
-	 * else the strategy is random.
+	 * Determine the next move by a smart strategy which returns the winning move in case the
+	 * player can win in the next turn, else blocks a winning move of an opponent. Otherwise it
+	 * avoids moves that let an opponent win on top of them and plays the move with the best
+	 * potential for itself and its opponents, see <code>Board.getCellPotential</code>, choosing
+	 * randomly between equally good moves. All moves are rated by the queries of the board, so
+	 * no moves are tried and no copies of the board are made.
 	 * @param board Board the game is played on.
 	 * @param id player ID of the player using this strategy
 	 * @return the coordinates of the next move following this strategy
 	 */
-	//@ requires board != null && id > 0;
+	//@ requires board != null && id >= 0;
 	//@ ensures board.isValidMove(\result.getX(),\result.getY());
 	@Override
-	public TowerCoordinates determineMove(Board board, int id) {
-		List<TowerCoordinates> availableTowers = board.getAvailableTowers();
-		TowerCoordinates choice = null;
-		int i = 0;
-		
-		//checking if I can win with the next move;
-		while (choice == null && i < availableTowers.size()) {
-			Board testBoard = board.deepCopy();
-			TowerCoordinates test = availableTowers.get(i);
-			int x = test.getX();
-			int y = test.getY();
-			try {
-				testBoard.makeMove(x, y, id);
-				if (testBoard.hasWon(x, y)) {
-					choice = test;
+	public synchronized TowerCoordinates determineMove(Board board, int id) {
+		if (buffer.length < board.xDim * board.yDim) {
+			buffer = new int[board.xDim * board.yDim];
+		}
+		int count = board.getAvailableTowers(buffer);
+		int block = NO_MOVE;
+		for (int i = 0; i < count; i++) {
+			if (board.isWinningMove(buffer[i], id)) {
+				return board.getTowerCoordinates(buffer[i]);
+			}
+			if (block == NO_MOVE && opponentWins(board, buffer[i],
+					board.getHeightOfTower(buffer[i]) + 1, id)) {
+				block = buffer[i];
+			}
+		}
+		if (block != NO_MOVE) {
+			return board.getTowerCoordinates(block);
+		}
+
+		// Rate the safe moves, or all moves if every move lets an opponent win
+		int best = NO_MOVE;
+		int bestScore = Integer.MIN_VALUE;
+		int ties = 0;
+		boolean safeOnly = false;
+		for (int i = 0; i < count; i++) {
+			int tower = buffer[i];
+			int z = board.getHeightOfTower(tower) + 1;
+			boolean safe = (board.zDim != Board.UNLIMITED_Z && z == board.zDim)
+					|| !opponentWins(board, tower, z + 1, id);
+			if (safeOnly && !safe) {
+				continue;
+			}
+			if (safe && !safeOnly) {
+				safeOnly = true;
+				best = NO_MOVE;
+			}
+			int score = potential(board, tower, z, id);
+			if (best == NO_MOVE || score > bestScore) {
+				best = tower;
+				bestScore = score;
+				ties = 1;
+			} else if (score == bestScore) {
+				ties++;
+				if (ThreadLocalRandom.current().nextInt(ties) == 0) {
+					best = tower;
 				}
-			} catch (IllegalCoordinatesException e) {
-				//Should not be happening because the available Towers are determined 
-				// and checked by the board. So do nothing.
 			}
-			i++;
 		}
+		return board.getTowerCoordinates(best);
+	}
 
-		if (choice != null) {
-			return choice;
-		} else {
-			Strategy randi = new RandomStrategy();
-			return randi.determineMove(board, id);
-		}		
+	// <------ Internal workings ------>
+
+	/**
+	 * Checks whether any other player that moved already would win with a piece at a cell.
+	 * @param board Board the game is played on
+	 * @param tower Tower index
+	 * @param z Z position of an empty cell
+	 * @param id player ID of the player using this strategy
+	 * @return A piece of an opponent at the cell completes a winning line
+	 */
+	/*@ pure @*/ private static boolean opponentWins(Board board, int tower, int z, int id) {
+		for (int i = 0; i < board.getPlayerCount(); i++) {
+			int opponent = board.getPlayerID(i);
+			if (opponent != id && board.isWinningCell(tower, z, opponent)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Rates a move by the potential of its cell for this player, which builds lines, and for
+	 * the other players, which blocks their lines.
+	 * @param board Board the game is played on
+	 * @param tower Tower index
+	 * @param z Z position of the cell the move fills
+	 * @param id player ID of the player using this strategy
+	 * @return Score of the move, higher is better
+	 */
+	/*@ pure @*/ private static int potential(Board board, int tower, int z, int id) {
+		int score = 2 * board.getCellPotential(tower, z, id);
+		for (int i = 0; i < board.getPlayerCount(); i++) {
+			int opponent = board.getPlayerID(i);
+			if (opponent != id) {
+				score += board.getCellPotential(tower, z, opponent);
+			}
+		}
+		return score;
 	}
 
 }
@@ -19,5 +19,31 @@ public interface Strategy {
 	//@ requires id >=0;
 	//@ ensures board.isValidMove(\result.getX(),\result.getY());
 	public TowerCoordinates determineMove(Board board, int id);
+	
+	/**
+	 * Determining the next move by this strategy before the deadline. Strategies that search 
+	 * return the best move found so far once the deadline passes or is cancelled, strategies 
+	 * that decide at once ignore it.
+	 * @param board Board the game is played on.
+	 * @param id player ID of the player using this strategy.
+	 * @param deadline Deadline for the move.
+	 * @return the coordinates of the next move following this strategy.
+	 */
+	//@ requires board != null && deadline != null;
+	//@ requires id >=0;
+	//@ ensures board.isValidMove(\result.getX(),\result.getY());
+	public default TowerCoordinates determineMove(Board board, int id, Deadline deadline) {
+		return determineMove(board, id);
+	}
+	
+	/**
+	 * Returns the number of positions this strategy has searched for all its moves so far, to 
+	 * measure its speed. Strategies that don't search return 0.
+	 * @return Number of positions searched
+	 */
+	//@ ensures \result >= 0;
+	public default long getPositionsSearched() {
+		return 0;
+	}
 
 }
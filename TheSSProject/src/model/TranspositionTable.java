@@ -0,0 +1,172 @@
+package model;
+
+/**
+ * Fixed size table of search results by Zobrist hash, see <code>Board.getHash()</code>. Entries
+ * are packed into two <code>long</code> arrays, so storing and probing never allocates. An entry
+ * is replaced by results of an equal or deeper search, or by any result once it is older than
+ * the current search. Keys are stored XORed with their data, so a torn write by another thread
+ * only makes the entry miss and the table can be shared by searches running in parallel.
+ */
+public class TranspositionTable {
+
+	// <------ Constants ------>
+
+	public static final int DEFAULT_SIZE_BITS = 16;
+	public static final int MAX_SIZE_BITS = 28;
+	public static final long MISS = 0;
+
+	public static final int EXACT = 1;
+	public static final int LOWER_BOUND = 2;
+	public static final int UPPER_BOUND = 3;
+
+	public static final int MAX_DEPTH = (1 << 7) - 1;
+	public static final int MAX_MOVE = (1 << 20) - 2;
+
+	// Layout of an entry: score, move + 1, depth, flag and age
+	private static final int MOVE_SHIFT = 32;
+	private static final int DEPTH_SHIFT = 52;
+	private static final int FLAG_SHIFT = 59;
+	private static final int AGE_SHIFT = 61;
+	private static final long MOVE_MASK = (1L << 20) - 1;
+	private static final long DEPTH_MASK = (1L << 7) - 1;
+	private static final long FLAG_MASK = 3;
+	private static final long AGE_MASK = 7;
+	private static final long SCORE_MASK = 0xFFFFFFFFL;
+
+	// <------ Instance variables ------>
+
+	private final long[] keys;
+	private final long[] data;
+	private final int mask;
+	private volatile int age;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates a table with <code>2^sizeBits</code> entries of 16 bytes each.
+	 * @param sizeBits Base 2 logarithm of the number of entries
+	 */
+	//@ requires sizeBits > 0 && sizeBits <= MAX_SIZE_BITS;
+	public TranspositionTable(int sizeBits) {
+		keys = new long[1 << sizeBits];
+		data = new long[1 << sizeBits];
+		mask = (1 << sizeBits) - 1;
+	}
+
+	/**
+	 * Creates a table with the default size.
+	 */
+	public TranspositionTable() {
+		this(DEFAULT_SIZE_BITS);
+	}
+
+	// <------ Queries ------>
+
+	/**
+	 * Returns the number of entries of this table.
+	 * @return Number of entries
+	 */
+	/*@ pure @*/ public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * Looks up the entry stored for a position.
+	 * @param key Zobrist hash of the position
+	 * @return Packed entry, <code>MISS</code> if the position is not stored
+	 */
+	/*@ pure @*/ public long probe(long key) {
+		int index = (int) key & mask;
+		long entry = data[index];
+		if (entry != MISS && (keys[index] ^ entry) == key) {
+			return entry;
+		}
+		return MISS;
+	}
+
+	/**
+	 * Returns the score of a packed entry.
+	 * @param entry Packed entry
+	 * @return Score
+	 */
+	/*@ pure @*/ public static int getScore(long entry) {
+		return (int) (entry & SCORE_MASK);
+	}
+
+	/**
+	 * Returns the best move of a packed entry.
+	 * @param entry Packed entry
+	 * @return Tower index of the best move, -1 if unknown
+	 */
+	/*@ pure @*/ public static int getMove(long entry) {
+		return (int) ((entry >>> MOVE_SHIFT) & MOVE_MASK) - 1;
+	}
+
+	/**
+	 * Returns the search depth of a packed entry.
+	 * @param entry Packed entry
+	 * @return Depth the score was searched to
+	 */
+	/*@ pure @*/ public static int getDepth(long entry) {
+		return (int) ((entry >>> DEPTH_SHIFT) & DEPTH_MASK);
+	}
+
+	/**
+	 * Returns whether the score of a packed entry is exact or a bound.
+	 * @param entry Packed entry
+	 * @return <code>EXACT</code>, <code>LOWER_BOUND</code> or <code>UPPER_BOUND</code>
+	 */
+	/*@ pure @*/ public static int getFlag(long entry) {
+		return (int) ((entry >>> FLAG_SHIFT) & FLAG_MASK);
+	}
+
+	// <------ Commands ------>
+
+	/**
+	 * Stores a search result, unless the table holds a deeper result of the current search for
+	 * another position at the same place.
+	 * @param key Zobrist hash of the position
+	 * @param depth Depth the position was searched to
+	 * @param flag <code>EXACT</code>, <code>LOWER_BOUND</code> or <code>UPPER_BOUND</code>
+	 * @param score Score of the position
+	 * @param move Tower index of the best move, -1 if unknown
+	 */
+	//@ requires depth >= 0 && flag >= EXACT && flag <= UPPER_BOUND && move <= MAX_MOVE;
+	public void store(long key, int depth, int flag, int score, int move) {
+		int index = (int) key & mask;
+		long old = data[index];
+		int currentAge = age;
+		if (old != MISS && (keys[index] ^ old) != key
+				&& ((old >>> AGE_SHIFT) & AGE_MASK) == currentAge && getDepth(old) > depth) {
+			return;
+		}
+		if (move < 0 && old != MISS && (keys[index] ^ old) == key) {
+			// Keep the best move known for this position
+			move = getMove(old);
+		}
+		long entry = (score & SCORE_MASK)
+				| ((move + 1L) & MOVE_MASK) << MOVE_SHIFT
+				| (Math.min(depth, MAX_DEPTH) & DEPTH_MASK) << DEPTH_SHIFT
+				| (flag & FLAG_MASK) << FLAG_SHIFT
+				| (currentAge & AGE_MASK) << AGE_SHIFT;
+		keys[index] = key ^ entry;
+		data[index] = entry;
+	}
+
+	/**
+	 * Marks the start of a new search, so the entries of earlier searches can be replaced.
+	 */
+	public void newSearch() {
+		age = (int) ((age + 1) & AGE_MASK);
+	}
+
+	/**
+	 * Removes all entries from this table.
+	 */
+	public void clear() {
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = 0;
+			data[i] = MISS;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of all winning lines of a board geometry with a fixed height. For every cell it stores
+ * the lines going through that cell, so a win check only has to look at those lines. Instances
+ * are immutable and shared by all boards with the same geometry.
+ */
+public class WinningLines {
+
+	// <------ Constants ------>
+
+	/**
+	 * Largest number of entries (cells of all lines, counted twice) an index may hold, larger
+	 * geometries are checked by walking the directions instead.
+	 */
+	public static final int MAX_ENTRIES = 1 << 21;
+
+	/**
+	 * Largest number of cells of a geometry whose lines also get bit masks, which take up to two
+	 * longs per line.
+	 */
+	public static final int MAX_MASK_CELLS = 128;
+
+	// Linearly independent direction vectors, see Board.hasWon(int, int, int)
+	static final int[][] DIRECTIONS = {
+		{1, 0, 0}, {0, 1, 0}, {0, 0, 1}, {1, 1, 0}, {1, -1, 0}, {1, 0, 1}, {1, 0, -1},
+		{0, 1, 1}, {0, 1, -1}, {1, 1, 1}, {1, 1, -1}, {1, -1, 1}, {1, -1, -1}
+	};
+
+	private static final WinningLines UNAVAILABLE = new WinningLines();
+	private static final Map<Long, WinningLines> CACHE = 
+			new ConcurrentHashMap<Long, WinningLines>();
+
+	// <------ Instance variables ------>
+
+	public final int lineCount;
+	public final int winningLength;
+	// Longs per bit mask of cells, 0 if the geometry has more than MAX_MASK_CELLS cells
+	public final int maskWords;
+	private final int[] lineCells;
+	private final int[] cellLineStart;
+	private final int[] cellLines;
+	private final long[] lineMasks;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates the index of all winning lines of the given geometry. Cells are numbered level by
+	 * level, i.e. cell (x, y, z) has index <code>(x - 1) + (y - 1) * xDim + (z - 1) * xDim *
+	 * yDim</code>. Geometries of at most <code>MAX_MASK_CELLS</code> cells also get a bit mask
+	 * of the cells of every line.
+	 * @param xDim X dimension of the board
+	 * @param yDim Y dimension of the board
+	 * @param zDim Z dimension of the board
+	 * @param winningLength Connected pieces required to win the game
+	 * @param lineCount Number of lines, as given by countLines
+	 */
+	//@ requires xDim > 0 && yDim > 0 && zDim > 0 && winningLength > 0;
+	private WinningLines(int xDim, int yDim, int zDim, int winningLength, int lineCount) {
+		this.lineCount = lineCount;
+		this.winningLength = winningLength;
+		int cells = xDim * yDim * zDim;
+		lineCells = new int[lineCount * winningLength];
+		cellLineStart = new int[cells + 1];
+		cellLines = new int[lineCount * winningLength];
+		maskWords = cells <= MAX_MASK_CELLS ? (cells + 63) >>> 6 : 0;
+		lineMasks = maskWords > 0 ? new long[lineCount * maskWords] : null;
+		int line = 0;
+		for (int[] dir : DIRECTIONS) {
+			for (int z = 1; z <= zDim; z++) {
+				for (int y = 1; y <= yDim; y++) {
+					for (int x = 1; x <= xDim; x++) {
+						int endX = x + (winningLength - 1) * dir[0];
+						int endY = y + (winningLength - 1) * dir[1];
+						int endZ = z + (winningLength - 1) * dir[2];
+						if (endX >= 1 && endX <= xDim && endY >= 1 && endY <= yDim
+								&& endZ >= 1 && endZ <= zDim) {
+							for (int i = 0; i < winningLength; i++) {
+								int cell = (x - 1 + i * dir[0]) + (y - 1 + i * dir[1]) * xDim
+										+ (z - 1 + i * dir[2]) * xDim * yDim;
+								lineCells[line * winningLength + i] = cell;
+								cellLineStart[cell + 1]++;
+								if (lineMasks != null) {
+									lineMasks[line * maskWords + (cell >>> 6)] |= 1L << cell;
+								}
+							}
+							line++;
+						}
+					}
+				}
+			}
+		}
+		for (int cell = 0; cell < cells; cell++) {
+			cellLineStart[cell + 1] += cellLineStart[cell];
+		}
+		int[] filled = new int[cells];
+		for (int l = 0; l < lineCount; l++) {
+			for (int i = 0; i < winningLength; i++) {
+				int cell = lineCells[l * winningLength + i];
+				cellLines[cellLineStart[cell] + filled[cell]] = l;
+				filled[cell]++;
+			}
+		}
+	}
+
+	/**
+	 * Creates the marker for geometries without an index.
+	 */
+	private WinningLines() {
+		this.lineCount = 0;
+		this.winningLength = 0;
+		this.maskWords = 0;
+		this.lineCells = null;
+		this.cellLineStart = null;
+		this.cellLines = null;
+		this.lineMasks = null;
+	}
+
+	// <------ Queries ------>
+
+	/**
+	 * Returns the shared index of winning lines for the given geometry, creating it the first
+	 * time it is requested.
+	 * @param xDim X dimension of the board
+	 * @param yDim Y dimension of the board
+	 * @param zDim Z dimension of the board
+	 * @param winningLength Connected pieces required to win the game
+	 * @return Index of winning lines, null if the height is unlimited or the geometry is too
+	 * large to index
+	 */
+	//@ requires xDim > 0 && yDim > 0 && winningLength > 0;
+	/*@ pure nullable @*/ public static WinningLines forGeometry(int xDim, int yDim, int zDim,
+			int winningLength) {
+		if (zDim == Board.UNLIMITED_Z || xDim > Short.MAX_VALUE || yDim > Short.MAX_VALUE
+				|| zDim > Short.MAX_VALUE || winningLength > Short.MAX_VALUE) {
+			return null;
+		}
+		Long key = ((long) xDim << 48) | ((long) yDim << 32) | ((long) zDim << 16)
+				| winningLength;
+		WinningLines lines = CACHE.get(key);
+		if (lines == null) {
+			long count = countLines(xDim, yDim, zDim, winningLength);
+			if (count * winningLength * 2 > MAX_ENTRIES
+					|| (long) xDim * yDim * zDim > MAX_ENTRIES) {
+				lines = UNAVAILABLE;
+			} else {
+				lines = new WinningLines(xDim, yDim, zDim, winningLength, (int) count);
+			}
+			CACHE.putIfAbsent(key, lines);
+		}
+		return lines == UNAVAILABLE ? null : lines;
+	}
+
+	/**
+	 * Returns the index of the first line going through the given cell in the lines returned by
+	 * <code>getLine</code>, the lines of a cell are stored consecutively.
+	 * @param cell Cell index
+	 * @return Position of the first line of this cell
+	 */
+	/*@ pure @*/ public int firstLineOf(int cell) {
+		return cellLineStart[cell];
+	}
+
+	/**
+	 * Returns the position after the last line going through the given cell.
+	 * @param cell Cell index
+	 * @return Position after the last line of this cell
+	 */
+	/*@ pure @*/ public int endLineOf(int cell) {
+		return cellLineStart[cell + 1];
+	}
+
+	/**
+	 * Returns the line stored at the given position of the per-cell line list.
+	 * @param position Position between <code>firstLineOf(cell)</code> and
+	 * <code>endLineOf(cell)</code>
+	 * @return Line index
+	 */
+	/*@ pure @*/ public int getLine(int position) {
+		return cellLines[position];
+	}
+
+	/**
+	 * Returns a cell of a line.
+	 * @param line Line index
+	 * @param i Position of the cell in the line, from 0 up to <code>winningLength</code>
+	 * @return Cell index
+	 */
+	//@ requires line >= 0 && line < lineCount && i >= 0 && i < winningLength;
+	/*@ pure @*/ public int getCell(int line, int i) {
+		return lineCells[line * winningLength + i];
+	}
+
+	/**
+	 * Returns a word of the bit mask of the cells of a line: bit <code>c % 64</code> of word
+	 * <code>c / 64</code> is set for every cell <code>c</code> of the line.
+	 * @param line Line index
+	 * @param word Number of the word, from 0 up to <code>maskWords</code>
+	 * @return Word of the bit mask
+	 */
+	//@ requires maskWords > 0 && line >= 0 && line < lineCount && word >= 0 && word < maskWords;
+	/*@ pure @*/ public long getLineMask(int line, int word) {
+		return lineMasks[line * maskWords + word];
+	}
+
+	// <------ Internal workings ------>
+
+	/**
+	 * Counts the winning lines of a geometry without creating them.
+	 * @param xDim X dimension of the board
+	 * @param yDim Y dimension of the board
+	 * @param zDim Z dimension of the board
+	 * @param winningLength Connected pieces required to win the game
+	 * @return Number of winning lines
+	 */
+	/*@ pure @*/ private static long countLines(int xDim, int yDim, int zDim, int winningLength) {
+		long count = 0;
+		for (int[] dir : DIRECTIONS) {
+			long starts = Math.max(0, xDim - (winningLength - 1) * Math.abs(dir[0]));
+			starts *= Math.max(0, yDim - (winningLength - 1) * Math.abs(dir[1]));
+			starts *= Math.max(0, zDim - (winningLength - 1) * Math.abs(dir[2]));
+			count += starts;
+		}
+		return count;
+	}
+}
@@ -1,26 +1,36 @@
 package server;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.net.Socket;
 import java.util.Observable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import model.TowerCoordinates;
 import view.ServerTUI;
 
 public class ClientHandler extends Observable implements Runnable {
 	private Socket socket;
+	// Set instead of the streams when the client is served by a SelectorServer
+	private SelectorConnection connection;
 	private BufferedReader in;
-	private BufferedWriter out;
-	private int bullshit = 0;
+	private MessageWriter writer;
+	private AtomicInteger bullshit = new AtomicInteger();
+	// Splits the received messages, which are handled one at a time
+	private final ProtocolTokenizer tokens = new ProtocolTokenizer(ProtocolTokenizer.SPACE);
 	private static final int BULLSHIT_THRESHOLD = 3;
+	// Commands handled by handleMessage
+	private static final String[] COMMANDS = {Protocol.Client.SENDCAPABILITIES, 
+		Protocol.Client.MAKEMOVE};
 	private static final String SHUTDOWN_ERROR = "IOException while trying to shut down "
 			+ "communication thread with ";
 	
-	private boolean exit = false;
+	private volatile boolean exit = false;
+	// Set by the first of the threads noticing the disconnect
+	private final AtomicBoolean disconnected = new AtomicBoolean();
 	private Server server;
 	private Game game;
 	private ServerTUI view;
@@ -36,7 +46,8 @@ public class ClientHandler extends Observable implements Runnable {
 		this.view = view;
 		try {
 			in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-			out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+			writer = new MessageWriter(socket, new BufferedOutputStream(socket.getOutputStream()), 
+					this);
 		} catch (IOException e) {
 			view.printMessage("IOException while creating communication channel to " + toString() 
 				+ ", trying to shut down");
@@ -44,6 +55,33 @@ public class ClientHandler extends Observable implements Runnable {
 		}
 	}
 	
+	/**
+	 * Creates a ClientHandler for a connection of a <code>SelectorServer</code>. The connection 
+	 * hands the received messages to this handler, so it is not run in a thread of its own.
+	 * @param connection Non-blocking connection to a client
+	 * @param view View to print communication messages on
+	 */
+	//@ requires connection != null && view != null;
+	public ClientHandler(SelectorConnection connection, ServerTUI view) {
+		this.connection = connection;
+		this.socket = connection.getSocket();
+		this.view = view;
+		connection.setHandler(this);
+	}
+	
+	/**
+	 * Starts the thread reading the messages of a thread-per-connection handler, and lets the 
+	 * shared executor of the provider write its messages.
+	 * @param threads Provider of the threads
+	 */
+	//@ requires threads != null;
+	public void start(ThreadProvider threads) {
+		threads.start(this, "ClientHandler " + toString());
+		if (writer != null) {
+			writer.start(threads.getExecutor());
+		}
+	}
+	
 	/**
 	 * Sets the Server field to this server, so handleDisconnect() can notify the server. 
 	 * Supposed to be set to null when a game takes over.
@@ -69,16 +107,49 @@ public class ClientHandler extends Observable implements Runnable {
 	 * @param message The message to send.
 	 */
 	//@ requires message != null;
-	public synchronized void sendMessage(String message) {
-		try {
-			out.write(message);
-			out.newLine();
-			out.flush();
+	public void sendMessage(String message) {
+		if (queue(new EncodedMessage(message))) {
 			printSentMessage(message);
+		}
+	}
+	
+	/**
+	 * Send an encoded message to the client connected through this handler's socket, without 
+	 * printing it, as a broadcast prints its message once for all recipients.
+	 * @param message The message to send.
+	 */
+	//@ requires message != null;
+	public void sendMessage(EncodedMessage message) {
+		queue(message);
+	}
+	
+	/**
+	 * Queues an encoded message for the client. The message is only queued, so this never 
+	 * waits for the client. A client with too many messages waiting is dropped.
+	 * @param message The message to send.
+	 * @return Whether the message was queued
+	 */
+	//@ requires message != null;
+	private boolean queue(EncodedMessage message) {
+		try {
+			boolean queued;
+			if (connection != null) {
+				queued = connection.send(message);
+			} else if (writer != null) {
+				queued = writer.send(message);
+			} else {
+				throw new IOException("No connection");
+			}
+			if (!queued) {
+				view.printMessage(toString() + " does not read its messages, dropping it");
+				dropConnection();
+			}
+			return queued;
 		} catch (IOException e) {
+			// The connection was closed, its thread reports the disconnect
 			view.printMessage("IOException while sending '" + message + "' to " + 
 					toString());
-			handleDisconnect();
+			return false;
 		}
 	}
 	
@@ -93,17 +164,39 @@ public class ClientHandler extends Observable implements Runnable {
 				// infinite loop.
 				String message = in.readLine();
 				if (message != null) {
-					printReceivedMessage(message);
-					handleMessage(message);
+					receive(message);
 				} else {
-					handleDisconnect();
+					connectionLost();
 				}
 			} catch (IOException e) {
-				handleDisconnect();
+				// Also thrown when shutdown() closes the socket
+				connectionLost();
 			}
 		}
 	}
 	
+	/**
+	 * Handles a message received from the client.
+	 * @param message The received message.
+	 */
+	//@ requires message != null;
+	void receive(String message) {
+		if (!exit) {
+			printReceivedMessage(message);
+			handleMessage(message);
+		}
+	}
+	
+	/**
+	 * Responds to the connection to the client being lost, unless this handler has been shut 
+	 * down already.
+	 */
+	void connectionLost() {
+		if (!exit) {
+			handleDisconnect();
+		}
+	}
+	
 	/**
 	 * Method to handle a received message. 
 	 * SENDCAPABILITES is only processed when the server and game fields are not set, i.e. when 
@@ -115,26 +208,23 @@ public class ClientHandler extends Observable implements Runnable {
 	 */
 	//@ requires message != null;
 	private void handleMessage(String message) {
-		String[] messageParts = message.split(" ");
-		if (messageParts.length > 0) {
-			String command = messageParts[0];
-			switch (command) {
+		tokens.reset(message);
+		if (tokens.count() > 0) {
+			switch (tokens.command(COMMANDS)) {
 				case Protocol.Client.SENDCAPABILITIES:
-					if (messageParts.length == 10 && server == null && game == null &&
-						(messageParts[3].equals("0") || messageParts[3].equals("1")) && 
-						(messageParts[8].equals("0") || messageParts[8].equals("1")) && 
-						(messageParts[9].equals("0") || messageParts[9].equals("1")) &&
-						!messageParts[2].contains("|")) {
+					if (tokens.count() == 10 && server == null && game == null &&
+						isBool(3) && isBool(8) && isBool(9) && 
+						!tokens.contains(2, ProtocolTokenizer.PIPE)) {
 						try {
-							int numPlayers = Integer.parseInt(messageParts[1]);
-							String playerName = messageParts[2];
-							boolean roomSupport = argToBool(messageParts[3]);
-							int maxXDim = Integer.parseInt(messageParts[4]);
-							int maxYDim = Integer.parseInt(messageParts[5]);
-							int maxZDim = Integer.parseInt(messageParts[6]);
-							int winLength = Integer.parseInt(messageParts[7]);
-							boolean chatSupport = argToBool(messageParts[8]);
-							boolean autoRefresh = argToBool(messageParts[9]);
+							int numPlayers = tokens.parseInt(1);
+							String playerName = tokens.token(2);
+							boolean roomSupport = tokens.equals(3, "1");
+							int maxXDim = tokens.parseInt(4);
+							int maxYDim = tokens.parseInt(5);
+							int maxZDim = tokens.parseInt(6);
+							int winLength = tokens.parseInt(7);
+							boolean chatSupport = tokens.equals(8, "1");
+							boolean autoRefresh = tokens.equals(9, "1");
 							ClientCapabilitiesStruct caps = 
 									new ClientCapabilitiesStruct(numPlayers, 
 									playerName, roomSupport, maxXDim, maxYDim, maxZDim, 
@@ -154,16 +244,14 @@ public class ClientHandler extends Observable implements Runnable {
 					}
 					break;
 				case Protocol.Client.MAKEMOVE:
-					if (messageParts.length == 3 && game != null && 
+					if (tokens.count() == 3 && game != null && 
 							game.expectsHandlerInput(this)) {
 						try {
 								//Workaround for added protocol coordinate origin definition
-							int x = Integer.parseInt(messageParts[1]) + 1;
-							int y = Integer.parseInt(messageParts[2]) + 1;
+							int x = tokens.parseInt(1) + 1;
+							int y = tokens.parseInt(2) + 1;
 							TowerCoordinates coords = new TowerCoordinates(x, y);
-							synchronized (game) {
-								game.processMove(this, coords);
-							}
+							game.processMove(this, coords);
 						} catch (NumberFormatException e) {
 							sendMessage(ServerMessages.genErrorIllegalStringString());
 						}
@@ -190,9 +278,8 @@ public class ClientHandler extends Observable implements Runnable {
 	 * Keeps track of bullshit received. Increases bullshit counter and evaluates if it exceeds 
 	 * the threshold, if so, this client is dropped.
 	 */
-	public synchronized void bullshitReceived() {
-		bullshit++;
-		if (bullshit >= BULLSHIT_THRESHOLD) {
+	public void bullshitReceived() {
+		if (bullshit.incrementAndGet() >= BULLSHIT_THRESHOLD) {
 			handleDisconnect();
 		}
 	}
@@ -202,6 +289,9 @@ public class ClientHandler extends Observable implements Runnable {
 	 * parent game or server, if set.
 	 */ 
 	private void handleDisconnect() {
+		if (disconnected.getAndSet(true)) {
+			return;
+		}
 		view.printMessage(toString() + " disconnected");
 		deleteObservers();
 		shutdown();
@@ -216,15 +306,32 @@ public class ClientHandler extends Observable implements Runnable {
 	
 	/** 
 	 * Shuts down this handler. This is supposed to happen when everything goes according to plan.
+	 * Messages sent before are still delivered, then the connection is closed.
 	 */
 	public void shutdown() {
 		exit = true;
-		try {
-			out.close();
-			in.close();
-			socket.close();
-		} catch (IOException e) {
-			view.printMessage(SHUTDOWN_ERROR + socket.getInetAddress());
+		if (connection != null) {
+			connection.close();
+		} else if (writer != null) {
+			writer.close();
+		} else {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				view.printMessage(SHUTDOWN_ERROR + socket.getInetAddress());
+			}
+		}
+	}
+	
+	/**
+	 * Closes the connection at once, dropping the messages not sent yet. The thread reading 
+	 * from the connection then reports the disconnect, so the caller isn't held up by it.
+	 */
+	private void dropConnection() {
+		if (connection != null) {
+			connection.disconnect();
+		} else {
+			writer.abort();
 		}
 	}
 	
@@ -257,18 +364,13 @@ public class ClientHandler extends Observable implements Runnable {
 	}
 	
 	/**
-	 * Checks if a String matched "1", if so return true, else false. Supposed to be called only 
-	 * when the String equals "1" or "0".
-	 * @param s A String equal to "1" or "0".
-	 * @return s.equals("1);
+	 * Checks if a token of the message being handled is "1" or "0", i.e. a boolean according to 
+	 * the protocol.
+	 * @param token Index of the token
+	 * @return The token is "1" or "0"
 	 */
-	//@ requires s.equals("1") || s.equals("0");
-	//@ ensures \result == s.equals("1");
-	private static boolean argToBool(String s) {
-		if (s.equals("1")) {
-			return true;
-		} else {
-			return false;
-		}
+	//@ requires token >= 0 && token < tokens.count();
+	/*@ pure @*/ private boolean isBool(int token) {
+		return tokens.equals(token, "1") || tokens.equals(token, "0");
 	}
 }
@@ -0,0 +1,101 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Protocol message encoded to bytes once, including its line separator, so a broadcast encodes
+ * it a single time for all recipients. Immutable: the bytes are only handed out as read-only
+ * buffers or written to a stream, so all recipients can share them.
+ */
+public final class EncodedMessage {
+
+	// <------ Constants ------>
+
+	// Same encoding and line ending as a BufferedWriter on the socket would use
+	public static final Charset CHARSET = Charset.defaultCharset();
+	public static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(CHARSET);
+
+	// <------ Instance variables ------>
+
+	// The message followed by LINE_SEPARATOR, possibly followed by unused bytes
+	private final byte[] bytes;
+	private final int length;
+	private final ByteBuffer buffer;
+	// Decoded when first asked for, if the message was built from bytes
+	private String text;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Encodes a message.
+	 * @param text Message without line separator
+	 */
+	//@ requires text != null;
+	public EncodedMessage(String text) {
+		byte[] encoded = text.getBytes(CHARSET);
+		this.bytes = Arrays.copyOf(encoded, encoded.length + LINE_SEPARATOR.length);
+		System.arraycopy(LINE_SEPARATOR, 0, bytes, encoded.length, LINE_SEPARATOR.length);
+		this.length = bytes.length;
+		this.buffer = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+		this.text = text;
+	}
+
+	/**
+	 * Creates a message of bytes encoded already, which must not be changed afterwards.
+	 * @param bytes Array starting with the message and its line separator
+	 * @param length Number of bytes of the message and its line separator
+	 */
+	//@ requires bytes != null && length >= LINE_SEPARATOR.length && length <= bytes.length;
+	EncodedMessage(byte[] bytes, int length) {
+		this.bytes = bytes;
+		this.length = length;
+		this.buffer = ByteBuffer.wrap(bytes, 0, length).slice().asReadOnlyBuffer();
+	}
+
+	// <------ Queries ------>
+
+	/**
+	 * Returns a read-only buffer of the encoded message for one recipient. The buffers share
+	 * the bytes but have their own positions.
+	 * @return Buffer from the start of the message up to and including its line separator
+	 */
+	//@ ensures \result.remaining() == getLength() && \result.isReadOnly();
+	public ByteBuffer getBuffer() {
+		return buffer.duplicate();
+	}
+
+	/**
+	 * Returns the number of bytes of the encoded message.
+	 * @return Length including the line separator
+	 */
+	/*@ pure @*/ public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Writes the encoded message to a stream.
+	 * @param out Stream to write to
+	 * @throws IOException if writing fails
+	 */
+	//@ requires out != null;
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(bytes, 0, length);
+	}
+
+	/**
+	 * Returns the message.
+	 * @return Message without line separator
+	 */
+	//@ ensures \result != null;
+	@Override
+	public String toString() {
+		if (text == null) {
+			text = new String(bytes, 0, length - LINE_SEPARATOR.length, CHARSET);
+		}
+		return text;
+	}
+}
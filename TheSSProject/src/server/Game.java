@@ -1,21 +1,35 @@
 package server;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Random;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import exc.IllegalBoardConstructorArgumentsException;
 import exc.IllegalCoordinatesException;
+import model.AlphaBetaStrategy;
 import model.Board;
+import model.BookStrategy;
 import model.ComputerPlayer;
+import model.Deadline;
+import model.MonteCarloStrategy;
 import model.Player;
-import model.SmartStrategy;
+import model.Strategy;
 import model.TowerCoordinates;
 import view.ServerTUI;
 
 public class Game extends Observable implements Runnable {
 	
+	// <------ Constants ------>
+	
+	// Time in milliseconds a computer player replacing a rage quitter may think about a move
+	public static final long REPLACEMENT_TIME_BUDGET = 500;
+	// Time in milliseconds within which every move of a computer player has to be made
+	public static final long COMPUTER_MOVE_TIME = 1000;
+	
 	// <------ Instance variables ------>
 	
 	// The line below is the one the JML compiler complains about, specifically the last part. 
@@ -23,12 +37,21 @@ public class Game extends Observable implements Runnable {
 	// private invariant (\forall int i; i >= 0 && i < numberOfPlayers; players.get(i) != null);
 	// private invariant currentPlayerIndex >= 0 && currentPlayerIndex < numberOfPlayers;
 	private List<Player> players;
+	// Players that started the game, as replacements change players
+	private final List<Player> startingPlayers;
 	private Map<Player, ClientHandler> handlerMap;
+	// Copy of the handlers in handlerMap, replaced when it changes, to broadcast without locking
+	private volatile ClientHandler[] recipients;
 	private /*@ spec_public @*/ Board board;
 	private Player currentPlayer;
 	private int currentPlayerIndex;
 	private ServerTUI view;
 	boolean exit = false;
+	// Guards the board, the players and handlerMap. A lock rather than a monitor, so virtual 
+	// threads holding it don't pin their carrier thread
+	private final Lock lock = new ReentrantLock();
+	// Deadline of the move a computer player is determining, cancelled on shutdown
+	private volatile Deadline moveDeadline;
 	
 	// <------ Constructors ------>
 	
@@ -48,10 +71,12 @@ public class Game extends Observable implements Runnable {
 	*/
 	public Game(List<Player> players, Map<Player, ClientHandler> handlerMap, GameRulesStruct 
 			rules, ServerTUI view) {
+		this.startingPlayers = new ArrayList<Player>(players);
 		try {
 			this.view = view;
 			this.players = players;
 			this.handlerMap = handlerMap;
+			this.recipients = handlerMap.values().toArray(new ClientHandler[handlerMap.size()]);
 			board = new Board(rules.xDim, rules.yDim, rules.zDim, rules.winLength);
 		} catch (IllegalBoardConstructorArgumentsException e) {
 			//Something went awfully wrong
@@ -98,45 +123,87 @@ public class Game extends Observable implements Runnable {
 	
 	/**
 	 * Requests a move from given player. Notifies all players of a new turn. 
-	 * If a player has been replaced by a ComputerPlayer, its 
-	 * determineMove method is called and processMove with the result.
 	 * @param player Player whose turn it is
 	 */
 	//@ requires player != null; 
 	private void requestMove(Player player) {
-		broadcastMessage(ServerMessages.genTurnOfPlayerString(player.playerID));
-		if (player instanceof ComputerPlayer) {
-			processMove(null, ((ComputerPlayer) player).determineMove(board));
+		broadcastMessage(ServerMessages.encodeTurnOfPlayer(player.playerID));
+	}
+	
+	/**
+	 * Lets computer players make their moves for as long as it is their turn. The moves are 
+	 * determined without holding the lock, so other handlers aren't blocked meanwhile.
+	 * @param player Computer player whose turn it is, null if it is no computer's turn
+	 */
+	private void playComputerMoves(ComputerPlayer player) {
+		ComputerPlayer computer = player;
+		while (computer != null) {
+			computer = makeMove(null, computer, determineComputerMove(computer));
 		}
 	}
 	
+	/**
+	 * Lets a computer player determine its move within <code>COMPUTER_MOVE_TIME</code>, or 
+	 * until the game shuts down.
+	 * @param player Computer player whose turn it is
+	 * @return Coordinates of the move
+	 */
+	//@ requires player != null;
+	private TowerCoordinates determineComputerMove(ComputerPlayer player) {
+		moveDeadline = new Deadline(COMPUTER_MOVE_TIME);
+		return player.determineMove(board, moveDeadline);
+	}
+	
 	/**
 	 * Processes a move determined by the given coordinates. Notifies players of game endings. 
-	 * Handles invalid moves.
-	 * @param handler ClientHandler caller, null for a move by a ComputerPlayer
+	 * Handles invalid moves. Afterwards makes the moves of computer players whose turn it is.
+	 * @param handler ClientHandler caller
 	 * @param coords Coordinates of the move
 	 */
 	//@ requires handler != null;
 	//@ requires coords != null && board.isValidMove(coords.getX(), coords.getY());
 	public void processMove(ClientHandler handler, TowerCoordinates coords) {
-		synchronized (this) {
+		playComputerMoves(makeMove(handler, null, coords));
+	}
+	
+	/**
+	 * Makes a move of a handler or a computer player, if it is still the turn of the caller.
+	 * @param handler ClientHandler caller, null for a move by a ComputerPlayer
+	 * @param computer ComputerPlayer caller, null for a move by a handler
+	 * @param coords Coordinates of the move
+	 * @return The computer player whose turn it is next, null if it is no computer's turn
+	 */
+	//@ requires (handler == null) != (computer == null) && coords != null;
+	private ComputerPlayer makeMove(ClientHandler handler, ComputerPlayer computer, 
+			TowerCoordinates coords) {
+		lock.lock();
+		try {
+			if (exit || (computer != null && currentPlayer != computer)) {
+				// Game ended or the computer player was replaced while it determined the move
+				return null;
+			}
 			if ((handler == null || getHandler(currentPlayer) == handler) && 
 					board.isValidMove(coords.x, coords.y)) {
 				//Caller is a ComputerPlayer or the correct human player, move is valid
 				try {
 					board.makeMove(coords.x, coords.y, currentPlayer.playerID);
-					broadcastMessage(ServerMessages.genNotifyMoveString(currentPlayer.playerID, 
+					broadcastMessage(ServerMessages.encodeNotifyMove(currentPlayer.playerID, 
 							coords.x, coords.y));
-					if (board.hasWon(coords.x, coords.y)) {
+					if (board.hasWinner()) {
 						broadcastMessage(ServerMessages.genNotifyWinString(currentPlayer.playerID));
 						shutdown();
-					} else if (board.isFull()) {
+						notifyResult(currentPlayer.playerID);
+					} else if (board.isDraw()) {
 						broadcastMessage(ServerMessages.genNotifyDrawString());
 						shutdown();
+						notifyResult(GameResultStruct.DRAW);
 					} else {
 						if (!exit) {
 							nextPlayer();
 							requestMove(currentPlayer);
+							if (currentPlayer instanceof ComputerPlayer) {
+								return (ComputerPlayer) currentPlayer;
+							}
 						}
 					}
 				} catch (IllegalCoordinatesException e) {
@@ -144,7 +211,7 @@ public class Game extends Observable implements Runnable {
 					view.printMessage(e.getMessage());
 					shutdown();
 				}
-			} else if (currentPlayer instanceof ComputerPlayer) {
+			} else if (handler == null) {
 				//Caller is a ComputerPlayer and sends an illegal move
 				broadcastMessage(ServerMessages.genNotifyDisconnectString(currentPlayer.playerID));
 				shutdown();
@@ -157,41 +224,60 @@ public class Game extends Observable implements Runnable {
 				handler.bullshitReceived();
 				handler.sendMessage(ServerMessages.genErrorInvalidMoveString());
 			}
+			return null;
+		} finally {
+			lock.unlock();
 		}
 	}
 	
 	/**
-	 * Drops the given player and replaces it with a ComputerPlayer with smart strategy with the 
-	 * same ID. Anti-cheat measure for rage quits.
+	 * Drops the given player and replaces it with a ComputerPlayer with the same ID, see 
+	 * createReplacementStrategy(). Anti-cheat measure for rage quits.
 	 * @param player Player to replace
 	 */
 	//@ requires client != null;
-	public synchronized void replaceClient(ClientHandler client) {
-		Player toReplace = null;
-		synchronized (handlerMap) {
+	public void replaceClient(ClientHandler client) {
+		ComputerPlayer toMove = null;
+		lock.lock();
+		try {
+			Player toReplace = null;
 			for (Map.Entry<Player, ClientHandler> handlerMapEntry : handlerMap.entrySet()) {
 				if (handlerMapEntry.getValue() == client) {
 					toReplace = handlerMapEntry.getKey();
 				}
 			}
-		}
-		// Synchronized to ensure handlerMap is locked shutdown or broadcastMessage try to iterate 
-		// over it
-		synchronized (handlerMap) {
 			if (toReplace != null) {
-				ComputerPlayer compPlayer = new ComputerPlayer(new SmartStrategy(), 
-					toReplace.playerID);
+				ComputerPlayer compPlayer = new ComputerPlayer(createReplacementStrategy(), 
+						toReplace.playerID, COMPUTER_MOVE_TIME);
 				players.add(players.indexOf(toReplace), compPlayer);
 				players.remove(toReplace);
 				handlerMap.remove(toReplace);
+				recipients = handlerMap.values().toArray(new ClientHandler[handlerMap.size()]);
 				if (handlerMap.size() == 0) {
 					shutdown();
 				} else if (currentPlayer == toReplace) {
 					currentPlayer = compPlayer;
-					processMove(null, compPlayer.determineMove(board));
+					toMove = compPlayer;
 				}
 			}
+		} finally {
+			lock.unlock();
+		}
+		playComputerMoves(toMove);
+	}
+	
+	/**
+	 * Creates the strategy of a computer player replacing a rage quitter: alpha-beta search 
+	 * after the opening book if the board keeps threat counters, Monte Carlo tree search on 
+	 * boards with unlimited height or too large for them.
+	 * @return Strategy for the replacement
+	 */
+	private Strategy createReplacementStrategy() {
+		if (board.tracksThreats()) {
+			return new BookStrategy(new AlphaBetaStrategy(REPLACEMENT_TIME_BUDGET, 
+					Runtime.getRuntime().availableProcessors()));
 		}
+		return new MonteCarloStrategy(REPLACEMENT_TIME_BUDGET);
 	}
 	
 	/**
@@ -215,18 +301,37 @@ public class Game extends Observable implements Runnable {
 	}
 	
 	/**
-	 * Sends a message through all ClientHandlers.
+	 * Sends a message through all ClientHandlers, encoding it once for all of them.
 	 * @param message The message to broadcast.
 	 */
 	//@ requires message != null;
 	private void broadcastMessage(String message) {
-		// Synchronized to ensure handlerMap is locked should replaceClient be called while this 
-		// method is being executed
-		synchronized (handlerMap) {
-			for (ClientHandler handler : handlerMap.values()) {
-				handler.sendMessage(message);
-			}
+		broadcastMessage(new EncodedMessage(message));
+	}
+	
+	/**
+	 * Sends an encoded message through all ClientHandlers. Sending only queues the message at 
+	 * every handler, so this takes no lock and doesn't wait for the slowest client. The 
+	 * message is printed once for all of them.
+	 * @param message The message to broadcast.
+	 */
+	//@ requires message != null;
+	private void broadcastMessage(EncodedMessage message) {
+		ClientHandler[] handlers = recipients;
+		for (ClientHandler handler : handlers) {
+			handler.sendMessage(message);
 		}
+		view.printMessage(java.time.LocalTime.now() + " " + handlers.length + " handlers T " 
+				+ message);
+	}
+	
+	/**
+	 * Notifies the observers, i.e. the server, of the result of the finished game.
+	 * @param winnerID Player ID of the winner, GameResultStruct.DRAW for a draw
+	 */
+	private void notifyResult(int winnerID) {
+		setChanged();
+		notifyObservers(new GameResultStruct(startingPlayers, winnerID));
 	}
 	
 	/**
@@ -234,14 +339,14 @@ public class Game extends Observable implements Runnable {
 	 */
 	public void shutdown() {
 		exit = true;
+		Deadline deadline = moveDeadline;
+		if (deadline != null) {
+			deadline.cancel();
+		}
 		String toPrint = "Shutting down game with handlers to";
-		// Synchronized to ensure handlerMap is locked should replaceClient be called while this 
-		// method is being executed
-		synchronized (handlerMap) {
-			for (ClientHandler handler : handlerMap.values()) {
-				handler.shutdown();
-				toPrint = toPrint + " " + handler.toString();
-			}
+		for (ClientHandler handler : recipients) {
+			handler.shutdown();
+			toPrint = toPrint + " " + handler.toString();
 		}
 		view.printMessage(toPrint);
 	}
@@ -0,0 +1,24 @@
+package server;
+
+import java.util.List;
+
+import model.Player;
+
+public class GameResultStruct {
+	// Winner ID of a game that ended in a draw
+	public static final int DRAW = -1;
+	
+	public final List<Player> players;
+	public final int winnerID;
+	
+	/**
+	 * Creates a new Game Result Structure.
+	 * @param players players that started the game.
+	 * @param winnerID player ID of the winner, DRAW for a draw.
+	 */
+	//@ requires players != null && players.size() >= 2 && winnerID >= DRAW;
+	public GameResultStruct(List<Player> players, int winnerID) {
+		this.players = players;
+		this.winnerID = winnerID;
+	}
+}
@@ -20,4 +20,28 @@ public class GameRulesStruct {
 		this.zDim = zDim;
 		this.winLength = winLength;
 	}
+	
+	/**
+	 * Checks whether the given object is a Game Rules Structure with the same rules.
+	 * @param o Object to compare to.
+	 * @return o has the same dimensions and winning length.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof GameRulesStruct)) {
+			return false;
+		}
+		GameRulesStruct rules = (GameRulesStruct) o;
+		return xDim == rules.xDim && yDim == rules.yDim && zDim == rules.zDim 
+				&& winLength == rules.winLength;
+	}
+	
+	/**
+	 * Returns a hash code consistent with equals.
+	 * @return Hash code of the rules.
+	 */
+	@Override
+	public int hashCode() {
+		return ((xDim * 31 + yDim) * 31 + zDim) * 31 + winLength;
+	}
 }
@@ -0,0 +1,326 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import model.Player;
+
+/**
+ * Matches waiting players into games of two. Players are put in a bucket per rule set they
+ * support, see <code>Server.determineRules</code>, ordered by rating in a TreeSet, so an
+ * arriving player is matched in O(log n) with the waiting player of the same bucket that is
+ * closest in rating. Two players are matched if their ratings differ by at most the search
+ * window of the one who waited longest, which widens with its waiting time. Players waiting
+ * longer than <code>OPEN_MILLIS</code> move to an open bucket where they are matched with
+ * players of any bucket, on the rules both support. Ratings are Elo ratings by player name,
+ * updated with the results of the games. The protocol has no accounts, so names are trusted: a
+ * client can play under any name and change the rating kept for it. Only the ratings of the
+ * <code>MAX_RATINGS</code> names that played most recently are kept, so clients can't make the
+ * ratings grow without bound. Not thread safe, the server calls it under its lock.
+ */
+public class Matchmaker {
+
+	// <------ Constants ------>
+
+	public static final int DEFAULT_RATING = 1500;
+	// Maximum change of a rating by one game
+	public static final int K_FACTOR = 32;
+	// Rating difference of two players a win of the weaker player is ten times less likely at
+	public static final double RATING_SCALE = 400;
+	// Rating difference accepted at once, and by how much it widens per second of waiting
+	public static final int BASE_WINDOW = 100;
+	public static final int WINDOW_PER_SECOND = 50;
+	// Time in milliseconds after which players are matched regardless of their capabilities
+	public static final long OPEN_MILLIS = 10000;
+	// Number of names a rating is kept for, the names that played longest ago are dropped
+	public static final int MAX_RATINGS = 10000;
+
+	private static final double MILLIS_PER_SECOND = 1000.0;
+	private static final double DRAW_SCORE = 0.5;
+
+	// Orders tickets by rating, then by arrival
+	private static final Comparator<Ticket> BY_RATING = new Comparator<Ticket>() {
+		@Override
+		public int compare(Ticket a, Ticket b) {
+			if (a.rating != b.rating) {
+				return Integer.compare(a.rating, b.rating);
+			}
+			return Long.compare(a.sequence, b.sequence);
+		}
+	};
+
+	// <------ Instance variables ------>
+
+	private final Map<GameRulesStruct, TreeSet<Ticket>> buckets =
+			new HashMap<GameRulesStruct, TreeSet<Ticket>>();
+	private final TreeSet<Ticket> open = new TreeSet<Ticket>(BY_RATING);
+	private final Map<Player, Ticket> tickets = new HashMap<Player, Ticket>();
+	// In the order the names last played in, oldest first
+	private final Map<String, Integer> ratings = new LinkedHashMap<String, Integer>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+			return size() > MAX_RATINGS;
+		}
+	};
+	private long sequence;
+
+	// <------ Queries ------>
+
+	/**
+	 * Returns the rating of a player.
+	 * @param name Name of the player
+	 * @return Rating, DEFAULT_RATING for a player that hasn't played yet
+	 */
+	//@ requires name != null;
+	/*@ pure @*/ public int getRating(String name) {
+		Integer rating = ratings.get(name);
+		return rating == null ? DEFAULT_RATING : rating;
+	}
+
+	/**
+	 * Returns the number of waiting players.
+	 * @return Number of players added and not matched or removed yet
+	 */
+	//@ ensures \result >= 0;
+	/*@ pure @*/ public int size() {
+		return tickets.size();
+	}
+
+	/**
+	 * Returns the rating difference a player accepts after waiting for the given time.
+	 * @param waited Waiting time in milliseconds
+	 * @return Maximum rating difference
+	 */
+	//@ requires waited >= 0;
+	/*@ pure @*/ public static int getWindow(long waited) {
+		return BASE_WINDOW + (int) Math.min(Integer.MAX_VALUE - BASE_WINDOW,
+				WINDOW_PER_SECOND * waited / (long) MILLIS_PER_SECOND);
+	}
+
+	// <------ Commands ------>
+
+	/**
+	 * Adds a waiting player and matches it with the closest waiting player in rating that
+	 * accepts it, preferring players of its own bucket.
+	 * @param player Player to add, not waiting yet
+	 * @param rules Rules the player supports
+	 * @param now Current time in milliseconds
+	 * @return The matched players, null if the player has to wait
+	 */
+	//@ requires player != null && rules != null && !tickets.containsKey(player);
+	public List<Player> add(Player player, GameRulesStruct rules, long now) {
+		Ticket ticket = new Ticket(player, rules, getRating(player.name), now, sequence++);
+		TreeSet<Ticket> bucket = buckets.get(rules);
+		Ticket match = closest(bucket, ticket, now);
+		if (match == null) {
+			match = closest(open, ticket, now);
+		}
+		if (match != null) {
+			remove(match.player);
+			return pair(match, ticket);
+		}
+		if (bucket == null) {
+			bucket = new TreeSet<Ticket>(BY_RATING);
+			buckets.put(rules, bucket);
+		}
+		bucket.add(ticket);
+		tickets.put(player, ticket);
+		return null;
+	}
+
+	/**
+	 * Removes a waiting player.
+	 * @param player Player to remove
+	 * @return Whether the player was waiting
+	 */
+	//@ requires player != null;
+	//@ ensures !tickets.containsKey(player);
+	public boolean remove(Player player) {
+		Ticket ticket = tickets.remove(player);
+		if (ticket == null) {
+			return false;
+		}
+		if (!open.remove(ticket)) {
+			TreeSet<Ticket> bucket = buckets.get(ticket.rules);
+			bucket.remove(ticket);
+			if (bucket.isEmpty()) {
+				buckets.remove(ticket.rules);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Matches the waiting players whose search windows have widened far enough, and moves the
+	 * players that waited longer than OPEN_MILLIS to the open bucket. Supposed to be called
+	 * regularly; takes time linear in the number of waiting players.
+	 * @param now Current time in milliseconds
+	 * @return The matched pairs of players
+	 */
+	public List<List<Player>> widen(long now) {
+		List<List<Player>> matches = new ArrayList<List<Player>>();
+		Iterator<TreeSet<Ticket>> bucketIterator = buckets.values().iterator();
+		while (bucketIterator.hasNext()) {
+			TreeSet<Ticket> bucket = bucketIterator.next();
+			matchNeighbours(bucket, now, matches);
+			Iterator<Ticket> ticketIterator = bucket.iterator();
+			while (ticketIterator.hasNext()) {
+				Ticket ticket = ticketIterator.next();
+				if (now - ticket.since >= OPEN_MILLIS) {
+					ticketIterator.remove();
+					open.add(ticket);
+				}
+			}
+			if (bucket.isEmpty()) {
+				bucketIterator.remove();
+			}
+		}
+		matchNeighbours(open, now, matches);
+		return matches;
+	}
+
+	/**
+	 * Updates the ratings of the players of a finished game: every pair of players is rated as
+	 * a game between the two, won by the winner or drawn if neither won.
+	 * @param result Result of the game
+	 */
+	//@ requires result != null;
+	public void recordResult(GameResultStruct result) {
+		int count = result.players.size();
+		double[] changes = new double[count];
+		for (int i = 0; i < count; i++) {
+			Player a = result.players.get(i);
+			for (int j = i + 1; j < count; j++) {
+				Player b = result.players.get(j);
+				double expected = 1 / (1 + Math.pow(10,
+						(getRating(b.name) - getRating(a.name)) / RATING_SCALE));
+				double score = DRAW_SCORE;
+				if (a.playerID == result.winnerID) {
+					score = 1;
+				} else if (b.playerID == result.winnerID) {
+					score = 0;
+				}
+				changes[i] += K_FACTOR * (score - expected);
+				changes[j] -= K_FACTOR * (score - expected);
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			String name = result.players.get(i).name;
+			int rating = getRating(name) + (int) Math.round(changes[i]);
+			// Removed first, so the name moves to the end of the order
+			ratings.remove(name);
+			ratings.put(name, rating);
+		}
+	}
+
+	// <------ Internal workings ------>
+
+	/**
+	 * Finds the waiting player in a bucket closest in rating to a ticket, if the two accept
+	 * each other.
+	 * @param bucket Bucket to search, null if there is none
+	 * @param ticket Ticket of the arriving player
+	 * @param now Current time in milliseconds
+	 * @return The closest acceptable ticket, null if there is none
+	 */
+	private static Ticket closest(TreeSet<Ticket> bucket, Ticket ticket, long now) {
+		if (bucket == null || bucket.isEmpty()) {
+			return null;
+		}
+		Ticket lower = bucket.floor(ticket);
+		Ticket higher = bucket.ceiling(ticket);
+		Ticket best = null;
+		if (lower != null && accepts(lower, ticket, now)) {
+			best = lower;
+		}
+		if (higher != null && accepts(higher, ticket, now) && (best == null
+				|| higher.rating - ticket.rating < ticket.rating - best.rating)) {
+			best = higher;
+		}
+		return best;
+	}
+
+	/**
+	 * Greedily matches the players of a bucket with their neighbours in rating.
+	 * @param bucket Bucket to match in
+	 * @param now Current time in milliseconds
+	 * @param matches List to add the matched pairs to
+	 */
+	private void matchNeighbours(TreeSet<Ticket> bucket, long now, List<List<Player>> matches) {
+		// Walks the set by lookups rather than an iterator, as matched tickets are removed
+		Ticket previous = bucket.isEmpty() ? null : bucket.first();
+		while (previous != null) {
+			Ticket ticket = bucket.higher(previous);
+			if (ticket != null && accepts(previous, ticket, now)) {
+				bucket.remove(previous);
+				bucket.remove(ticket);
+				tickets.remove(previous.player);
+				tickets.remove(ticket.player);
+				matches.add(pair(previous, ticket));
+				ticket = bucket.higher(ticket);
+			}
+			previous = ticket;
+		}
+	}
+
+	/**
+	 * Checks whether two players accept each other, i.e. whether their ratings differ by at
+	 * most the search window of the one that waited longest.
+	 * @param a Ticket of a player
+	 * @param b Ticket of another player
+	 * @param now Current time in milliseconds
+	 * @return The players may be matched
+	 */
+	/*@ pure @*/ private static boolean accepts(Ticket a, Ticket b, long now) {
+		long waited = now - Math.min(a.since, b.since);
+		return Math.abs(a.rating - b.rating) <= getWindow(Math.max(0, waited));
+	}
+
+	/**
+	 * Returns the players of two tickets.
+	 * @param first Ticket of the first player
+	 * @param second Ticket of the second player
+	 * @return List of both players
+	 */
+	private static List<Player> pair(Ticket first, Ticket second) {
+		List<Player> players = new ArrayList<Player>(2);
+		players.add(first.player);
+		players.add(second.player);
+		return players;
+	}
+
+	/**
+	 * Waiting player with the rules it supports, its rating and when it started waiting.
+	 */
+	private static class Ticket {
+		private final Player player;
+		private final GameRulesStruct rules;
+		private final int rating;
+		private final long since;
+		private final long sequence;
+
+		/**
+		 * Creates a ticket.
+		 * @param player Waiting player
+		 * @param rules Rules the player supports
+		 * @param rating Rating of the player
+		 * @param since Time in milliseconds the player started waiting
+		 * @param sequence Number of the ticket, to order equal ratings by arrival
+		 */
+		Ticket(Player player, GameRulesStruct rules, int rating, long since, long sequence) {
+			this.player = player;
+			this.rules = rules;
+			this.rating = rating;
+			this.since = since;
+			this.sequence = sequence;
+		}
+	}
+}
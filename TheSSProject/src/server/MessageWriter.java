@@ -0,0 +1,188 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes the messages of a thread-per-connection <code>ClientHandler</code>. Senders only queue
+ * their messages, so a slow client never stalls a game; a client that falls 
+ * <code>MAX_QUEUED</code> messages behind is not reading them and is dropped. Queued messages 
+ * are written by a task on a shared executor, started when messages arrive and ending when 
+ * the queue is empty, so a client only occupies a thread for writing while it has messages 
+ * waiting. The task copies the bytes of all queued messages, which are encoded already, into 
+ * the buffer and flushes them in one go once the queue is empty, after lingering briefly for 
+ * more, so a broadcast of several messages costs one write per client instead of one per 
+ * message.
+ */
+public class MessageWriter {
+
+	// <------ Constants ------>
+
+	// Time in nanoseconds to wait for more messages before flushing
+	public static final long LINGER_NANOS = 100000;
+	// Maximum number of messages waiting to be written
+	public static final int MAX_QUEUED = 256;
+
+	// Queued by close(), compared by identity
+	private static final EncodedMessage END = new EncodedMessage("END");
+
+	// <------ Instance variables ------>
+
+	private final Socket socket;
+	private final OutputStream out;
+	private final ClientHandler handler;
+	// One more place, for END
+	private final BlockingQueue<EncodedMessage> queue = 
+			new LinkedBlockingQueue<EncodedMessage>(MAX_QUEUED + 1);
+	private volatile boolean closed;
+	// Runs the writing task, null until the writer is started
+	private volatile Executor executor;
+	// Set while a writing task is scheduled or running, and for good once the writer ended
+	private final AtomicBoolean writing = new AtomicBoolean();
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates a writer for a connection.
+	 * @param socket Socket of the client, closed when the writer ends
+	 * @param out Buffered stream to the client
+	 * @param handler Handler to tell if writing fails
+	 */
+	//@ requires socket != null && out != null && handler != null;
+	public MessageWriter(Socket socket, OutputStream out, ClientHandler handler) {
+		this.socket = socket;
+		this.out = out;
+		this.handler = handler;
+	}
+
+	// <------ Commands ------>
+
+	/**
+	 * Starts writing the queued messages, and those queued later, with the given executor.
+	 * @param writers Executor to write with
+	 */
+	//@ requires writers != null;
+	public void start(Executor writers) {
+		executor = writers;
+		writeLater();
+	}
+
+	/**
+	 * Queues a message for sending.
+	 * @param message Message to send
+	 * @return Whether the message was queued, false if <code>MAX_QUEUED</code> messages are
+	 * waiting already
+	 * @throws IOException if the writer is closed
+	 */
+	//@ requires message != null;
+	public boolean send(EncodedMessage message) throws IOException {
+		if (closed) {
+			throw new IOException("Writer is closed");
+		}
+		if (queue.size() < MAX_QUEUED && queue.offer(message)) {
+			writeLater();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Closes the writer. Messages queued before are still sent, then the socket is closed.
+	 */
+	public void close() {
+		closed = true;
+		if (queue.offer(END)) {
+			writeLater();
+		} else {
+			abort();
+		}
+	}
+
+	/**
+	 * Closes the writer and the socket at once, dropping the queued messages. The reading 
+	 * thread of the handler notices the closed socket.
+	 */
+	public void abort() {
+		closed = true;
+		queue.clear();
+		queue.offer(END);
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// Closing anyway
+		}
+	}
+
+	// <------ Internal workings ------>
+
+	/**
+	 * Lets the executor write the queued messages, unless a task is doing so already or the 
+	 * writer is not started yet.
+	 */
+	private void writeLater() {
+		Executor writers = executor;
+		if (writers != null && !writing.getAndSet(true)) {
+			writers.execute(new Runnable() {
+				@Override
+				public void run() {
+					write();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Writes the queued messages until the queue is empty, the writer is closed or writing 
+	 * fails. Never runs in two tasks at the same time.
+	 */
+	private void write() {
+		try {
+			while (true) {
+				EncodedMessage message = queue.poll();
+				while (message != null) {
+					if (message == END) {
+						out.flush();
+						end();
+						return;
+					}
+					message.writeTo(out);
+					message = queue.poll();
+					if (message == null) {
+						message = queue.poll(LINGER_NANOS, TimeUnit.NANOSECONDS);
+					}
+				}
+				out.flush();
+				writing.set(false);
+				// A message may have been queued after the queue was found empty
+				if (queue.isEmpty() || writing.getAndSet(true)) {
+					return;
+				}
+			}
+		} catch (IOException e) {
+			end();
+			handler.connectionLost();
+		} catch (InterruptedException e) {
+			end();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Ends the writer for good and closes the socket. Leaves <code>writing</code> set, so no 
+	 * task is started anymore.
+	 */
+	private void end() {
+		closed = true;
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// Closing anyway
+		}
+	}
+}
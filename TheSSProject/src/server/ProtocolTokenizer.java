@@ -0,0 +1,246 @@
+package server;
+
+/**
+ * Splits protocol messages into tokens without creating substrings, for the server and the
+ * client. A tokenizer is reused for every message: <code>reset</code> only records where the
+ * tokens start and end, tokens are compared and parsed in place and only turned into Strings
+ * when asked for. Tokens are split exactly like <code>String.split</code> with the separator
+ * does, so empty tokens between separators count and trailing empty tokens don't.
+ * Not thread safe, every reading thread needs its own tokenizer.
+ */
+public class ProtocolTokenizer {
+
+	// <------ Constants ------>
+
+	public static final char SPACE = ' ';
+	public static final char PIPE = '|';
+	// Returned by command() for an unknown command
+	public static final String UNKNOWN = "";
+
+	private static final int RADIX = 10;
+
+	// <------ Instance variables ------>
+
+	private final char separator;
+	private CharSequence line;
+	// Start and end index of every token
+	private int[] bounds = new int[32];
+	private int count;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates a tokenizer splitting at the given separator.
+	 * @param separator Character between tokens
+	 */
+	public ProtocolTokenizer(char separator) {
+		this.separator = separator;
+	}
+
+	// <------ Commands ------>
+
+	/**
+	 * Splits a message into tokens.
+	 * @param message Message to split
+	 * @return This tokenizer
+	 */
+	//@ requires message != null;
+	public ProtocolTokenizer reset(CharSequence message) {
+		return reset(message, 0, message.length());
+	}
+
+	/**
+	 * Splits a part of a message, e.g. a token of another tokenizer, into tokens.
+	 * @param message Message to split
+	 * @param start Index of the first character of the part
+	 * @param end Index after the last character of the part
+	 * @return This tokenizer
+	 */
+	//@ requires message != null && 0 <= start && start <= end && end <= message.length();
+	public ProtocolTokenizer reset(CharSequence message, int start, int end) {
+		line = message;
+		count = 0;
+		int tokenStart = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || message.charAt(i) == separator) {
+				if (2 * count == bounds.length) {
+					int[] grown = new int[2 * bounds.length];
+					System.arraycopy(bounds, 0, grown, 0, bounds.length);
+					bounds = grown;
+				}
+				bounds[2 * count] = tokenStart;
+				bounds[2 * count + 1] = i;
+				count++;
+				tokenStart = i + 1;
+			}
+		}
+		// Like String.split: trailing empty tokens are dropped, unless the part is empty
+		if (end > start) {
+			while (count > 0 && bounds[2 * count - 1] == bounds[2 * count - 2]) {
+				count--;
+			}
+		}
+		return this;
+	}
+
+	// <------ Queries ------>
+
+	/**
+	 * Returns the message this tokenizer was last reset to, which the token indices refer to.
+	 * @return The message, null if the tokenizer was never reset
+	 */
+	/*@ pure @*/ public CharSequence getMessage() {
+		return line;
+	}
+
+	/**
+	 * Returns the number of tokens.
+	 * @return Number of tokens of the last message
+	 */
+	//@ ensures \result >= 0;
+	/*@ pure @*/ public int count() {
+		return count;
+	}
+
+	/**
+	 * Returns the index in the message of the first character of a token.
+	 * @param token Index of the token
+	 * @return Start index
+	 */
+	//@ requires token >= 0 && token < count();
+	/*@ pure @*/ public int start(int token) {
+		return bounds[2 * token];
+	}
+
+	/**
+	 * Returns the index in the message after the last character of a token.
+	 * @param token Index of the token
+	 * @return End index
+	 */
+	//@ requires token >= 0 && token < count();
+	/*@ pure @*/ public int end(int token) {
+		return bounds[2 * token + 1];
+	}
+
+	/**
+	 * Checks whether a token equals a String.
+	 * @param token Index of the token
+	 * @param s String to compare to
+	 * @return Token equals s
+	 */
+	//@ requires token >= 0 && token < count() && s != null;
+	/*@ pure @*/ public boolean equals(int token, String s) {
+		int start = start(token);
+		if (end(token) - start != s.length()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (line.charAt(start + i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a token contains a character.
+	 * @param token Index of the token
+	 * @param c Character to look for
+	 * @return c occurs in the token
+	 */
+	//@ requires token >= 0 && token < count();
+	/*@ pure @*/ public boolean contains(int token, char c) {
+		for (int i = start(token); i < end(token); i++) {
+			if (line.charAt(i) == c) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns which of the given commands the first token is, so it can be switched on.
+	 * @param commands Known commands
+	 * @return The element of commands equal to the first token, UNKNOWN if there is none
+	 */
+	//@ requires commands != null;
+	/*@ ensures \result == UNKNOWN
+	  @ || (\exists int i; 0 <= i && i < commands.length; \result == commands[i]); */
+	/*@ pure @*/ public String command(String[] commands) {
+		if (count > 0) {
+			for (String command : commands) {
+				if (equals(0, command)) {
+					return command;
+				}
+			}
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * Parses a token as a decimal int, like <code>Integer.parseInt</code> does.
+	 * @param token Index of the token
+	 * @return Value of the token
+	 * @throws NumberFormatException if the token is not a decimal int
+	 */
+	//@ requires token >= 0 && token < count();
+	/*@ pure @*/ public int parseInt(int token) throws NumberFormatException {
+		int start = start(token);
+		int end = end(token);
+		int i = start;
+		boolean negative = false;
+		if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+			negative = line.charAt(i) == '-';
+			i++;
+		}
+		if (i == end) {
+			throw invalidNumber(token);
+		}
+		// Accumulated negatively, as Integer.MIN_VALUE has no positive counterpart
+		long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		long result = 0;
+		for (; i < end; i++) {
+			int digit = Character.digit(line.charAt(i), RADIX);
+			result = result * RADIX - digit;
+			if (digit < 0 || result < limit) {
+				throw invalidNumber(token);
+			}
+		}
+		return (int) (negative ? result : -result);
+	}
+
+	/**
+	 * Returns a token as a String, for tokens that have to be kept.
+	 * @param token Index of the token
+	 * @return The token
+	 */
+	//@ requires token >= 0 && token < count();
+	//@ ensures \result != null;
+	/*@ pure @*/ public String token(int token) {
+		return line.subSequence(start(token), end(token)).toString();
+	}
+
+	/**
+	 * Returns the message part this tokenizer was last reset to.
+	 * @return The tokens with their separators
+	 */
+	//@ ensures \result != null;
+	@Override
+	public String toString() {
+		if (count == 0) {
+			return "";
+		}
+		return line.subSequence(start(0), end(count - 1)).toString();
+	}
+
+	// <------ Internal workings ------>
+
+	/**
+	 * Creates the exception for a token that is not a number.
+	 * @param token Index of the token
+	 * @return Exception naming the token
+	 */
+	private NumberFormatException invalidNumber(int token) {
+		return new NumberFormatException("For input string: \"" + token(token) + "\"");
+	}
+}
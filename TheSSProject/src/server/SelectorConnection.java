@@ -0,0 +1,321 @@
+package server;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking connection to a client, driven by an event loop of a <code>SelectorServer</code>.
+ * Received bytes are framed into lines, which are handed to the <code>ClientHandler</code> of
+ * the connection one at a time on a worker thread, so a slow move never blocks the event loop.
+ * Sent lines are queued and written as far as the socket accepts them, the rest is written by
+ * the event loop once the socket is writable again. All queued lines are written with a single
+ * gathering write, so lines sent in quick succession are coalesced.
+ */
+public class SelectorConnection {
+
+	// <------ Constants ------>
+
+	public static final int READ_BUFFER_SIZE = 4096;
+	public static final int MAX_LINE_LENGTH = 8192;
+	// Maximum number of queued lines written at once
+	public static final int MAX_GATHER = 64;
+	// Maximum number of lines waiting to be written
+	public static final int MAX_QUEUED = 256;
+
+	// Same encoding as the streams of a thread-per-connection ClientHandler
+	private static final Charset CHARSET = EncodedMessage.CHARSET;
+
+	// <------ Instance variables ------>
+
+	private final SocketChannel channel;
+	private final SelectionKey key;
+	private final Executor workers;
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	private byte[] line = new byte[128];
+	private int lineLength;
+	private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final AtomicInteger queued = new AtomicInteger();
+	// Lines taken from the queue for a gathering write, only used while flushing
+	private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+	// The socket accepts no more until the event loop finds it writable
+	private volatile boolean writePending;
+	// Close once the queued lines are written
+	private volatile boolean closing;
+	// Lines and the disconnect still to be handed to the handler, in order
+	private final Queue<String> inbound = new ConcurrentLinkedQueue<String>();
+	private final AtomicBoolean draining = new AtomicBoolean();
+	private final AtomicBoolean lost = new AtomicBoolean();
+	private volatile boolean closed;
+	private ClientHandler handler;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates a connection for a channel registered with an event loop.
+	 * @param channel Non-blocking channel of the client
+	 * @param key Key of the channel at the selector of the event loop
+	 * @param workers Executor handing received lines to the handler
+	 */
+	//@ requires channel != null && key != null && workers != null;
+	SelectorConnection(SocketChannel channel, SelectionKey key, Executor workers) {
+		this.channel = channel;
+		this.key = key;
+		this.workers = workers;
+	}
+
+	// <------ Queries ------>
+
+	/**
+	 * Returns the socket of this connection, to describe the client.
+	 * @return Socket of the channel
+	 */
+	/*@ pure @*/ public Socket getSocket() {
+		return channel.socket();
+	}
+
+	/**
+	 * Checks whether this connection has been closed.
+	 * @return Connection is closed
+	 */
+	/*@ pure @*/ public boolean isClosed() {
+		return closed;
+	}
+
+	// <------ Commands ------>
+
+	/**
+	 * Sets the handler the received lines are handed to.
+	 * @param handlerToSet Handler of this connection
+	 */
+	//@ requires handlerToSet != null;
+	void setHandler(ClientHandler handlerToSet) {
+		handler = handlerToSet;
+	}
+
+	/**
+	 * Queues a line for sending and writes as much of the queue as the socket accepts, unless
+	 * the socket is known to be full. If writing fails, the connection is lost and the handler
+	 * is told so by a worker.
+	 * @param message Message to send, its bytes are shared with the other recipients
+	 * @return Whether the line was queued, false if <code>MAX_QUEUED</code> lines are waiting 
+	 * already
+	 * @throws IOException if the connection is closed
+	 */
+	//@ requires message != null;
+	public boolean send(EncodedMessage message) throws IOException {
+		if (closed || closing) {
+			throw new IOException("Connection is closed");
+		}
+		if (queued.get() >= MAX_QUEUED) {
+			return false;
+		}
+		queued.incrementAndGet();
+		outbound.add(message.getBuffer());
+		if (!writePending) {
+			try {
+				flush();
+			} catch (IOException e) {
+				disconnect();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Closes the connection once the lines sent before are written. Lines that were received
+	 * before are still handed to the handler.
+	 */
+	public void close() {
+		closing = true;
+		try {
+			flush();
+		} catch (IOException e) {
+			// Closed by flush()
+		}
+	}
+
+	// <------ Event loop ------>
+
+	/**
+	 * Reads what the socket has received and dispatches the complete lines. Called by the event
+	 * loop when the channel is readable.
+	 */
+	void read() {
+		int count;
+		try {
+			count = channel.read(readBuffer);
+		} catch (IOException e) {
+			count = -1;
+		}
+		if (count < 0) {
+			disconnect();
+			return;
+		}
+		readBuffer.flip();
+		while (readBuffer.hasRemaining()) {
+			byte b = readBuffer.get();
+			if (b == '\n') {
+				int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1
+						: lineLength;
+				dispatch(new String(line, 0, length, CHARSET));
+				lineLength = 0;
+			} else if (lineLength == MAX_LINE_LENGTH) {
+				// No message of the protocol is this long
+				disconnect();
+				return;
+			} else {
+				if (lineLength == line.length) {
+					line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_LINE_LENGTH));
+				}
+				line[lineLength] = b;
+				lineLength++;
+			}
+		}
+		readBuffer.clear();
+	}
+
+	/**
+	 * Writes the queued lines as far as the socket accepts them, and asks the event loop to
+	 * call again when the socket is writable if it didn't accept all of them. Called by senders
+	 * and by the event loop when the channel is writable.
+	 * @throws IOException if writing fails, the connection is closed then
+	 */
+	synchronized void flush() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			do {
+				while (!outbound.isEmpty()) {
+					int count = 0;
+					for (ByteBuffer buffer : outbound) {
+						if (count == MAX_GATHER) {
+							break;
+						}
+						gather[count] = buffer;
+						count++;
+					}
+					channel.write(gather, 0, count);
+					boolean full = gather[count - 1].hasRemaining();
+					for (int i = 0; i < count; i++) {
+						if (!gather[i].hasRemaining()) {
+							outbound.poll();
+							queued.decrementAndGet();
+						}
+						gather[i] = null;
+					}
+					if (full) {
+						setWriteInterest(true);
+						return;
+					}
+				}
+				setWriteInterest(false);
+				// A sender may have queued a line while writePending was still set
+			} while (!outbound.isEmpty());
+			if (closing) {
+				closeNow();
+			}
+		} catch (IOException e) {
+			closeNow();
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes the channel and tells the handler, after the lines received before.
+	 */
+	void disconnect() {
+		closeNow();
+		if (!lost.getAndSet(true)) {
+			drainLater();
+		}
+	}
+
+	// <------ Internal workings ------>
+
+	/**
+	 * Closes the channel at once, dropping the lines not written yet.
+	 */
+	private void closeNow() {
+		closed = true;
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// Closing anyway
+		}
+	}
+
+	/**
+	 * Hands a received line to the handler, after the lines received before it.
+	 * @param message Received line
+	 */
+	private void dispatch(String message) {
+		inbound.add(message);
+		drainLater();
+	}
+
+	/**
+	 * Lets a worker hand the received lines to the handler, unless one is doing so already.
+	 */
+	private void drainLater() {
+		if (!draining.getAndSet(true)) {
+			workers.execute(new Runnable() {
+				@Override
+				public void run() {
+					drain();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Hands all received lines to the handler, followed by the disconnect if the connection
+	 * was lost. Runs on a worker, never on two at the same time.
+	 */
+	private void drain() {
+		while (true) {
+			String message = inbound.poll();
+			while (message != null) {
+				handler.receive(message);
+				message = inbound.poll();
+			}
+			if (lost.get() && inbound.isEmpty()) {
+				handler.connectionLost();
+			}
+			draining.set(false);
+			// A line may have arrived after the queue was found empty
+			if (inbound.isEmpty() || draining.getAndSet(true)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Switches the interest of the event loop in the channel being writable.
+	 * @param write Whether the event loop should flush when the channel is writable
+	 */
+	private void setWriteInterest(boolean write) {
+		writePending = write;
+		try {
+			int ops = write ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+			if (key.interestOps() != ops) {
+				key.interestOps(ops);
+				key.selector().wakeup();
+			}
+		} catch (CancelledKeyException e) {
+			// The connection is being closed
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import view.ServerTUI;
+
+/**
+ * Alternative to <code>ConnectionListener</code> that serves all clients from a few event loop
+ * threads with non-blocking channels, instead of one thread per client. The first event loop
+ * also accepts the connections and hands them to the event loops in turn. Every connection
+ * gets a <code>SelectorConnection</code> and a <code>ClientHandler</code>, so the protocol is
+ * handled just as for the thread-per-connection server.
+ */
+public class SelectorServer implements Runnable {
+	public static final String LISTEN_ERROR = ConnectionListener.LISTEN_ERROR;
+	public static final String SHUTDOWN_ERROR = "Error while shutting down selector server";
+
+	private ServerSocketChannel listener;
+	private EventLoop[] loops;
+	// Hands received lines to the handlers, so the event loops never wait for a game
+	private ExecutorService workers;
+	private Server server;
+	private ServerTUI view;
+	private int nextLoop = 0;
+	private volatile boolean exit = false;
+
+	/**
+	 * Creates a selector server, i.e. a non-blocking ServerSocketChannel and the selectors of
+	 * the event loops.
+	 * @param port Port to bind the ServerSocketChannel to
+	 * @param threads Number of event loop threads
+	 * @param view View to print messages to
+	 * @param server Parent server
+	 * @throws IOException If the ServerSocketChannel can not be created at the given port (if it
+	 * is in use) or a selector can not be opened
+	 */
+	//@ requires threads > 0 && view != null && server != null;
+	public SelectorServer(int port, int threads, ServerTUI view, Server server)
+			throws IOException {
+		this.server = server;
+		this.view = view;
+		listener = ServerSocketChannel.open();
+		try {
+			listener.bind(new InetSocketAddress(port));
+			listener.configureBlocking(false);
+			loops = new EventLoop[threads];
+			for (int i = 0; i < threads; i++) {
+				loops[i] = new EventLoop(Selector.open());
+			}
+			listener.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			shutdown();
+			throw e;
+		}
+		workers = Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * Returns the port the ServerSocketChannel is bound to, which is chosen by the system if
+	 * the server was created with port 0.
+	 * @return Local port of the ServerSocketChannel
+	 */
+	/*@ pure @*/ public int getLocalPort() {
+		return listener.socket().getLocalPort();
+	}
+
+	/**
+	 * Run method of the first event loop, the others are started in threads of their own.
+	 */
+	public void run() {
+		for (int i = 1; i < loops.length; i++) {
+			new Thread(loops[i], "SelectorServer-" + i).start();
+		}
+		loops[0].run();
+	}
+
+	/**
+	 * Closes the ServerSocketChannel and the selectors, which closes the connections to all
+	 * clients of this server.
+	 */
+	public void shutdown() {
+		exit = true;
+		try {
+			listener.close();
+			if (loops != null) {
+				for (EventLoop loop : loops) {
+					if (loop != null) {
+						loop.selector.close();
+					}
+				}
+			}
+			if (workers != null) {
+				workers.shutdown();
+			}
+			view.printMessage("Selector server shut down, no new connections will be made");
+		} catch (IOException e) {
+			view.printMessage(SHUTDOWN_ERROR);
+		}
+	}
+
+	/**
+	 * Accepts all pending connections and hands each of them to the next event loop.
+	 * @throws IOException if accepting fails
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel = listener.accept();
+		while (channel != null) {
+			view.printMessage(channel.socket().getInetAddress().getHostAddress() + ":"
+					+ channel.socket().getPort() + " connected");
+			channel.configureBlocking(false);
+			loops[nextLoop].add(channel);
+			nextLoop = (nextLoop + 1) % loops.length;
+			channel = listener.accept();
+		}
+	}
+
+	/**
+	 * Event loop: waits on its selector for channels that are readable or writable, and
+	 * reads from them or flushes them.
+	 */
+	private class EventLoop implements Runnable {
+		private final Selector selector;
+		// Accepted channels to register with the selector, from the accepting loop
+		private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<SocketChannel>();
+
+		/**
+		 * Creates an event loop.
+		 * @param selector Selector of the loop
+		 */
+		//@ requires selector != null;
+		EventLoop(Selector selector) {
+			this.selector = selector;
+		}
+
+		/**
+		 * Hands an accepted channel to this loop.
+		 * @param channel Non-blocking channel of a client
+		 */
+		//@ requires channel != null;
+		void add(SocketChannel channel) {
+			pending.add(channel);
+			selector.wakeup();
+		}
+
+		/**
+		 * Run method for the event loop in a separate thread.
+		 */
+		public void run() {
+			while (!exit) {
+				try {
+					selector.select();
+					register();
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						handle(key);
+					}
+				} catch (ClosedSelectorException e) {
+					return;
+				} catch (IOException e) {
+					if (!exit) {
+						view.printMessage(LISTEN_ERROR);
+						shutdown();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Registers the channels handed to this loop and creates their handlers.
+		 * @throws IOException if a channel can not be registered
+		 */
+		private void register() throws IOException {
+			SocketChannel channel = pending.poll();
+			while (channel != null) {
+				// Not interested in reading until the handler is in place
+				SelectionKey key = channel.register(selector, 0);
+				SelectorConnection connection = new SelectorConnection(channel, key, workers);
+				key.attach(connection);
+				ClientHandler peer = new ClientHandler(connection, view);
+				server.initConnection(peer);
+				if (key.isValid()) {
+					key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+				}
+				channel = pending.poll();
+			}
+		}
+
+		/**
+		 * Handles a channel the selector found ready.
+		 * @param key Key of the channel
+		 * @throws IOException if accepting fails
+		 */
+		private void handle(SelectionKey key) throws IOException {
+			if (!key.isValid()) {
+				return;
+			}
+			if (key.isAcceptable()) {
+				accept();
+				return;
+			}
+			SelectorConnection connection = (SelectorConnection) key.attachment();
+			if (key.isWritable()) {
+				try {
+					connection.flush();
+				} catch (IOException e) {
+					connection.disconnect();
+					return;
+				}
+			}
+			if (key.isValid() && key.isReadable()) {
+				connection.read();
+			}
+		}
+	}
+}
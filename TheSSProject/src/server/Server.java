@@ -2,7 +2,7 @@ package server;
 
 import java.io.IOException;
 import java.net.Socket;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -10,7 +10,11 @@ import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import model.Board;
 import model.Player;
@@ -69,14 +73,25 @@ public class Server implements Observer {
 	public static final boolean EXT_CHAT = false;
 	public static final int DEFAULT_DIM = Board.DEFAULT_DIM;
 	public static final int DEFAULT_PLAYERS = 2;
+	// System property with the number of event loop threads, 0 for a thread per client
+	public static final String SELECTOR_THREADS_PROPERTY = "connect4.selectorThreads";
+	// System property to run the listener, clients and games on virtual threads
+	public static final String VIRTUAL_THREADS_PROPERTY = "connect4.virtualThreads";
+	// Time in milliseconds between widening the search windows of the waiting players
+	public static final long MATCH_INTERVAL = 1000;
 	
 	private int port;
+	private int selectorThreads;
 	private boolean enableExtensions;
-	private List<Player> lobbyPlayerList;
+	private Matchmaker matchmaker;
 	private Map<Player, ClientHandler> handlerMap;
+	private Map<ClientHandler, Player> playerMap;
 	private Map<Player, ClientCapabilitiesStruct> capabilitiesMap;
 	private PlayerIDProvider playerIDProvider;
 	private ServerTUI view;
+	private ThreadProvider threads = new ThreadProvider(false);
+	// Guards the lobby and the matchmaker
+	private final Lock lock = new ReentrantLock();
 	
 	/** 
 	 * Main method to launch the server.
@@ -86,16 +101,24 @@ public class Server implements Observer {
 		ServerTUI ui = new ServerTUI();
 		int port = ui.requestPortNumber();
 		boolean enableExtensions = ui.requestExtensions();
+		int selectorThreads = Integer.getInteger(SELECTOR_THREADS_PROPERTY, 0);
+		boolean virtualThreads = Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY);
+		if (virtualThreads && !ThreadProvider.isVirtualSupported()) {
+			ui.printMessage("Virtual threads are not supported by this Java version, "
+					+ "using platform threads");
+		}
 		ui.printMessage("Starting server bound at port " + port + 
 				(enableExtensions ? " with " : " without ") + "extensions...");
 		try {
-			Server server = new Server(port, enableExtensions, ui);
+			Server server = new Server(port, enableExtensions, selectorThreads, ui);
+			server.setVirtualThreads(virtualThreads);
 			server.listenForConnections();
 		} catch (IOException e) {
 			ui.printMessage("Port in use, please enter another one");
 			port = ui.requestPortNumber();
 			try {
-				Server servertry = new Server(port, enableExtensions, ui);
+				Server servertry = new Server(port, enableExtensions, selectorThreads, ui);
+				servertry.setVirtualThreads(virtualThreads);
 				servertry.listenForConnections();
 			} catch (IOException exc) {
 				ui.printMessage("Port also in use, please think before entering something");
@@ -113,23 +136,63 @@ public class Server implements Observer {
 	//@ requires port >= 1025 && port <= 65535;
 	//@ requires view != null;
 	public Server(int port, boolean enableExtensions, ServerTUI view) {
+		this(port, enableExtensions, 0, view);
+	}
+	
+	/**
+	 * Server constructor.
+	 * @param port Port to bind the connection listener to
+	 * @param enableExtensions Whether to enable extensions (currently larger board, 
+	 * winning length supported)
+	 * @param selectorThreads Number of event loop threads of a SelectorServer serving the 
+	 * clients, 0 to serve every client in a thread of its own
+	 * @param view View to use
+	 */
+	//@ requires port >= 1025 && port <= 65535;
+	//@ requires selectorThreads >= 0 && view != null;
+	public Server(int port, boolean enableExtensions, int selectorThreads, ServerTUI view) {
 		this.port = port;
+		this.selectorThreads = selectorThreads;
 		this.enableExtensions = enableExtensions;
 		this.playerIDProvider = new PlayerIDProvider();
 		this.view = view;
-		lobbyPlayerList = new ArrayList<Player>(10);
+		matchmaker = new Matchmaker();
 		handlerMap = new ConcurrentHashMap<Player, ClientHandler>(10);
+		playerMap = new ConcurrentHashMap<ClientHandler, Player>(10);
 		capabilitiesMap = new ConcurrentHashMap<Player, ClientCapabilitiesStruct>(10);
 	}
 	
+	/**
+	 * Sets whether the connection listener, the clients and the games run on virtual threads, 
+	 * where the Java runtime supports them. Supposed to be called before listening for 
+	 * connections.
+	 * @param virtual Whether to use virtual threads
+	 */
+	public void setVirtualThreads(boolean virtual) {
+		threads = new ThreadProvider(virtual);
+	}
+	
 	/**
 	 * Method that initiates listening for incoming connections.
 	 * @throws IOException if the ConnectionListener cannot be initiated.
 	 */
 	public void listenForConnections() throws IOException {
 		view.printMessage("Server started");
-		ConnectionListener listener = new ConnectionListener(port, view, this);
-		new Thread(listener).start();
+		if (selectorThreads > 0) {
+			SelectorServer selector = new SelectorServer(port, selectorThreads, view, this);
+			// Event loops block in their selector, so they stay on platform threads
+			new Thread(selector, "SelectorServer-0").start();
+		} else {
+			ConnectionListener listener = new ConnectionListener(port, view, this);
+			threads.start(listener, "ConnectionListener");
+		}
+		Timer timer = new Timer("Matchmaker", true);
+		timer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				widenMatches();
+			}
+		}, MATCH_INTERVAL, MATCH_INTERVAL);
 	}
 	
 	/**
@@ -141,8 +204,19 @@ public class Server implements Observer {
 	public void initConnection(Socket socket) {
 		ClientHandler peer = null;
 		peer = new ClientHandler(socket, view);
+		initConnection(peer);
+		peer.start(threads);
+	}
+	
+	/**
+	 * Initiates a connection through the given handler, e.g. observes it and sends the initial 
+	 * server message. The handler is to receive messages only afterwards, so the first 
+	 * message of the client reaches this server.
+	 * @param peer Handler of a newly connected client
+	 */
+	//@ requires peer != null;
+	public void initConnection(ClientHandler peer) {
 		peer.addObserver(this);
-		new Thread(peer).start();
 		if (enableExtensions) {
 			peer.sendMessage(ServerMessages.genCapabilitiesString(EXT_PLAYERS, EXT_ROOMS, 
 					EXT_XYDIM, EXT_XYDIM, EXT_ZDIM, EXT_WINLENGTH, EXT_CHAT));
@@ -155,17 +229,30 @@ public class Server implements Observer {
 	/**
 	 * Update method used by the ClientHandler to indicate a client has responded with its 
 	 * capabilities and it is useful to add this information to the server. Only does this 
-	 * when the client concerned is not already associated with a created player.
+	 * when the client concerned is not already associated with a created player. Also used by 
+	 * a Game to report its result, which updates the ratings of its players.
 	 * @param o Observable that this observer observes.
 	 * @param arg Information the Observable sends in addition, 
-	 * here the Client Capabilities Structure.
+	 * here the Client Capabilities Structure or the Game Result Structure.
 	 */
-	public synchronized void update(Observable o, Object arg) {
-		if (o instanceof ClientHandler && arg instanceof ClientCapabilitiesStruct) {
-			if (!handlerMap.containsValue((ClientHandler) o)) {
-				initPlayer((ClientHandler) o, (ClientCapabilitiesStruct) arg);
-			} else {
-				((ClientHandler) o).bullshitReceived();
+	public void update(Observable o, Object arg) {
+		if (o instanceof Game && arg instanceof GameResultStruct) {
+			lock.lock();
+			try {
+				matchmaker.recordResult((GameResultStruct) arg);
+			} finally {
+				lock.unlock();
+			}
+		} else if (o instanceof ClientHandler && arg instanceof ClientCapabilitiesStruct) {
+			lock.lock();
+			try {
+				if (!playerMap.containsKey((ClientHandler) o)) {
+					initPlayer((ClientHandler) o, (ClientCapabilitiesStruct) arg);
+				} else {
+					((ClientHandler) o).bullshitReceived();
+				}
+			} finally {
+				lock.unlock();
 			}
 		}
 	}
@@ -179,36 +266,52 @@ public class Server implements Observer {
 	 */
 	//@ requires handler != null && caps != null;
 	private void initPlayer(ClientHandler handler, ClientCapabilitiesStruct caps) {
-		synchronized (this) {
+		lock.lock();
+		try {
 			handler.setParentServer(this);
 			handler.deleteObserver(this);
 			int id = playerIDProvider.obtainID();
 			Player player = new Player(caps.playerName, id);
 			handler.sendMessage(ServerMessages.genAssignIDString(id));
-			lobbyPlayerList.add(player);
 			handlerMap.put(player, handler);
+			playerMap.put(handler, player);
 			capabilitiesMap.put(player, caps);
 			matchPlayers(player);
+		} finally {
+			lock.unlock();
 		}
 	}
 	
 	/**
-	 * Checks if the given player would allow a game to be started. Current implementation is very 
-	 * basic, just starts a game between the first to players connected.
+	 * Checks if the given player would allow a game to be started, by handing it to the 
+	 * matchmaker with the rules it supports. Starts a game if a waiting player of about the 
+	 * same rating is found, otherwise the player waits until widenMatches finds one.
 	 * @param player Player to match
 	 */
-	//@ requires player != null;
+	//@ requires player != null && capabilitiesMap.containsKey(player);
 	private void matchPlayers(Player player) {
-		//If one wants to implement more sophisticated matching,
-		// it could be done here, but for the moment just first players.
-		if (lobbyPlayerList.size() >= DEFAULT_PLAYERS) {
-			List<Player> players = new ArrayList<Player>(DEFAULT_PLAYERS);
-			players.add(lobbyPlayerList.get(0));
-			players.add(lobbyPlayerList.get(1));
+		List<Player> players = matchmaker.add(player, 
+				determineRules(Collections.singletonList(player)), System.currentTimeMillis());
+		if (players != null) {
 			startGame(players, determineRules(players));
 		}
 	}
 	
+	/**
+	 * Widens the search windows of the waiting players and starts the games of the players 
+	 * the matchmaker matches then. Called regularly while listening for connections.
+	 */
+	private void widenMatches() {
+		lock.lock();
+		try {
+			for (List<Player> players : matchmaker.widen(System.currentTimeMillis())) {
+				startGame(players, determineRules(players));
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
 	/**
 	 * Determines the lowest common divisor of rules between players and the server.
 	 * @param players List of players
@@ -265,18 +368,19 @@ public class Server implements Observer {
 		//view.printMessage("startGame called");
 		Map<Player, ClientHandler> handlers = new HashMap<Player, ClientHandler>(players.size());
 		for (Player player : players) {
-			handlers.put(player, handlerMap.get(player));
-			lobbyPlayerList.remove(player);
-			handlerMap.remove(player);
+			ClientHandler handler = handlerMap.remove(player);
+			handlers.put(player, handler);
+			playerMap.remove(handler);
 			capabilitiesMap.remove(player);
 			playerIDProvider.releaseID(player.playerID);
 		}
 		Game game = new Game(players, handlers, rules, view);
+		game.addObserver(this);
 		for (ClientHandler handler : handlers.values()) {
 			handler.setParentServer(null);
 			handler.setParentGame(game);
 		}
-		new Thread(game).start();
+		threads.start(game, "Game");
 	}
 	
 	/** 
@@ -284,19 +388,18 @@ public class Server implements Observer {
 	 * @param client A ClientHandler
 	 */
 	//@ requires client != null;
-	public synchronized void removeClient(ClientHandler client) {
-		synchronized (this) {
+	public void removeClient(ClientHandler client) {
+		lock.lock();
+		try {
 			// Game may have been started with this client
-			if (handlerMap.containsValue(client)) {
-				for (Map.Entry<Player, ClientHandler> handlerMapEntry : handlerMap.entrySet()) {
-					if (handlerMapEntry.getValue() == client) {
-						lobbyPlayerList.remove(handlerMapEntry.getKey());
-						handlerMap.remove(handlerMapEntry.getKey());
-						capabilitiesMap.remove(handlerMapEntry.getKey());
-						break;
-					}
-				}
+			Player player = playerMap.remove(client);
+			if (player != null) {
+				matchmaker.remove(player);
+				handlerMap.remove(player);
+				capabilitiesMap.remove(player);
 			}
+		} finally {
+			lock.unlock();
 		}
 	}
 }
@@ -9,6 +9,24 @@ public class ServerMessages {
 	private static final String PIPE = "|";
 	private static final String COLOUR = "ff0000"; 
 	
+	// Prefixes of the messages built from bytes, digits are ASCII in every supported charset
+	private static final byte[] TURNOFPLAYER_PREFIX = 
+			(Protocol.Server.TURNOFPLAYER + SPACE).getBytes(EncodedMessage.CHARSET);
+	private static final byte[] NOTIFYMOVE_PREFIX = 
+			(Protocol.Server.NOTIFYMOVE + SPACE).getBytes(EncodedMessage.CHARSET);
+	private static final byte SPACE_BYTE = ' ';
+	// Maximum number of bytes of an int: a sign and ten digits
+	private static final int MAX_INT_BYTES = 11;
+	// turnOfPlayer messages of the player IDs below this are encoded once and reused
+	private static final int CACHED_TURNS = 16;
+	private static final EncodedMessage[] TURNS = new EncodedMessage[CACHED_TURNS];
+	
+	static {
+		for (int id = 0; id < CACHED_TURNS; id++) {
+			TURNS[id] = new EncodedMessage(genTurnOfPlayerString(id));
+		}
+	}
+	
 	/**
 	 * Generates a serverCapabilites message String.
 	 * @param numPlayers Number of players supported
@@ -50,13 +68,14 @@ public class ServerMessages {
 	//@ requires players != null & (\forall Player player; players.contains(player); player !=null);
 	public static String genStartGameString(int xDim, int yDim, int zDim, int winLength, 
 			List<Player> players) {
-		String s = Protocol.Server.STARTGAME + SPACE + xDim + PIPE + yDim + PIPE + zDim + PIPE 
-				+ winLength;
+		StringBuilder s = new StringBuilder(Protocol.Server.STARTGAME).append(SPACE).append(xDim)
+				.append(PIPE).append(yDim).append(PIPE).append(zDim).append(PIPE).append(winLength);
 		for (Player player : players) {
-			s = s + SPACE + player.playerID + PIPE + player.name + PIPE + COLOUR;
+			s.append(SPACE).append(player.playerID).append(PIPE).append(player.name).append(PIPE)
+					.append(COLOUR);
 			//This will give everyone the same colour
 		}
-		return s;
+		return s.toString();
 	}
 	
 	/**
@@ -68,6 +87,24 @@ public class ServerMessages {
 		return Protocol.Server.TURNOFPLAYER + SPACE + playerID;
 	}
 	
+	/**
+	 * Encodes a turnOfPlayer message, reusing the message of small player IDs.
+	 * @param playerID A player's ID
+	 * @return turnOfPlayer message
+	 */
+	//@ ensures \result.toString().equals(genTurnOfPlayerString(playerID));
+	public static EncodedMessage encodeTurnOfPlayer(int playerID) {
+		if (playerID >= 0 && playerID < CACHED_TURNS) {
+			return TURNS[playerID];
+		}
+		byte[] bytes = new byte[TURNOFPLAYER_PREFIX.length + MAX_INT_BYTES 
+				+ EncodedMessage.LINE_SEPARATOR.length];
+		int length = putBytes(bytes, 0, TURNOFPLAYER_PREFIX);
+		length = putInt(bytes, length, playerID);
+		length = putBytes(bytes, length, EncodedMessage.LINE_SEPARATOR);
+		return new EncodedMessage(bytes, length);
+	}
+	
 	/**
 	 * Generates a notifyMove message String.
 	 * @param playerID ID of player that made the move
@@ -80,6 +117,28 @@ public class ServerMessages {
 		return Protocol.Server.NOTIFYMOVE + SPACE + playerID + SPACE + (x - 1) + SPACE + (y - 1);
 	}
 	
+	/**
+	 * Encodes a notifyMove message straight to bytes, without building a String.
+	 * @param playerID ID of player that made the move
+	 * @param x X coordinate
+	 * @param y Y coordinate
+	 * @return notifyMove message
+	 */
+	//@ ensures \result.toString().equals(genNotifyMoveString(playerID, x, y));
+	public static EncodedMessage encodeNotifyMove(int playerID, int x, int y) {
+		byte[] bytes = new byte[NOTIFYMOVE_PREFIX.length + 3 * MAX_INT_BYTES + 2 
+				+ EncodedMessage.LINE_SEPARATOR.length];
+		int length = putBytes(bytes, 0, NOTIFYMOVE_PREFIX);
+		length = putInt(bytes, length, playerID);
+		bytes[length++] = SPACE_BYTE;
+		//Workaround for added protocol coordinate origin definition
+		length = putInt(bytes, length, x - 1);
+		bytes[length++] = SPACE_BYTE;
+		length = putInt(bytes, length, y - 1);
+		length = putBytes(bytes, length, EncodedMessage.LINE_SEPARATOR);
+		return new EncodedMessage(bytes, length);
+	}
+	
 	/**
 	 * Generates a notifyWin message String.
 	 * @param playerID ID of player that won
@@ -156,5 +215,41 @@ public class ServerMessages {
 	public static int boolToInt(boolean bool) {
 		return bool ? 1 : 0;
 	}
+	
+	/**
+	 * Copies bytes into an array.
+	 * @param dest Array to copy to
+	 * @param pos Index to copy to
+	 * @param src Bytes to copy
+	 * @return Index after the copied bytes
+	 */
+	private static int putBytes(byte[] dest, int pos, byte[] src) {
+		System.arraycopy(src, 0, dest, pos, src.length);
+		return pos + src.length;
+	}
+	
+	/**
+	 * Writes the decimal ASCII digits of an int into an array.
+	 * @param dest Array to write to, with room for MAX_INT_BYTES bytes from pos
+	 * @param pos Index to write to
+	 * @param value Value to write
+	 * @return Index after the written digits
+	 */
+	private static int putInt(byte[] dest, int pos, int value) {
+		long rest = value;
+		if (rest < 0) {
+			dest[pos++] = '-';
+			rest = -rest;
+		}
+		int digits = 1;
+		for (long power = 10; power <= rest; power *= 10) {
+			digits++;
+		}
+		for (int i = pos + digits - 1; i >= pos; i--) {
+			dest[i] = (byte) ('0' + rest % 10);
+			rest /= 10;
+		}
+		return pos + digits;
+	}
 
 }
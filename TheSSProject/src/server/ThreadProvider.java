@@ -0,0 +1,133 @@
+package server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts the threads of the server: the connection listener, a thread per client and a thread
+ * per game, and runs short tasks such as writing queued messages. These are virtual threads if
+ * asked for and the Java runtime supports them (Java 21 and later), otherwise platform threads.
+ * Virtual threads are created by reflection, so the server still compiles and runs on Java 8.
+ */
+public class ThreadProvider {
+
+	// <------ Constants ------>
+
+	// Thread.ofVirtual() and Thread.Builder.name(String) and unstarted(Runnable), null if the
+	// runtime has no virtual threads
+	private static final Method OF_VIRTUAL;
+	private static final Method NAME;
+	private static final Method UNSTARTED;
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method unstarted = null;
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builder.getMethod("name", String.class);
+			unstarted = builder.getMethod("unstarted", Runnable.class);
+			// Fails where virtual threads are a preview feature that is not enabled
+			ofVirtual.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		UNSTARTED = unstarted;
+	}
+
+	// <------ Instance variables ------>
+
+	private final boolean virtual;
+	// Runs short tasks, pooled platform threads or a virtual thread per task
+	private final Executor executor;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates a thread provider.
+	 * @param virtual Whether to start virtual threads, ignored if the runtime has none
+	 */
+	public ThreadProvider(boolean virtual) {
+		this.virtual = virtual && isVirtualSupported();
+		if (this.virtual) {
+			executor = new Executor() {
+				@Override
+				public void execute(Runnable task) {
+					start(task, "Worker");
+				}
+			};
+		} else {
+			final AtomicInteger workers = new AtomicInteger();
+			// Threads are only kept while there are tasks, so idle clients cost none
+			executor = Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "Worker-" + workers.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	// <------ Queries ------>
+
+	/**
+	 * Checks whether the Java runtime supports virtual threads.
+	 * @return Virtual threads can be started
+	 */
+	/*@ pure @*/ public static boolean isVirtualSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Checks whether this provider starts virtual threads.
+	 * @return Started threads are virtual
+	 */
+	//@ ensures \result ==> isVirtualSupported();
+	/*@ pure @*/ public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * Returns the executor for short tasks, which runs them on a shared pool of platform 
+	 * threads, or on a virtual thread each if this provider starts virtual threads.
+	 * @return Executor of this provider
+	 */
+	//@ ensures \result != null;
+	/*@ pure @*/ public Executor getExecutor() {
+		return executor;
+	}
+
+	// <------ Commands ------>
+
+	/**
+	 * Starts a thread running the given task.
+	 * @param task Task to run
+	 * @param name Name of the thread
+	 * @return The started thread
+	 */
+	//@ requires task != null && name != null;
+	public Thread start(Runnable task, String name) {
+		Thread thread = null;
+		if (virtual) {
+			try {
+				thread = (Thread) UNSTARTED.invoke(NAME.invoke(OF_VIRTUAL.invoke(null), name),
+						task);
+			} catch (ReflectiveOperationException e) {
+				// Checked when the class was loaded, so cannot happen
+				throw new IllegalStateException(e);
+			}
+		} else {
+			thread = new Thread(task, name);
+		}
+		thread.start();
+		return thread;
+	}
+}
@@ -0,0 +1,240 @@
+package testing;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import exc.CoordinatesOutOfBoundsException;
+import exc.IllegalBoardConstructorArgumentsException;
+import exc.IllegalCoordinatesException;
+import model.Board;
+import model.RandomStrategy;
+import model.SmartStrategy;
+import model.Strategy;
+import model.TowerCoordinates;
+
+/**
+ * Micro benchmark of the hot paths of the model: moves, win checks, listing the available
+ * towers, copies and the strategies that decide at once. Every operation is run on the default
+ * board, a mid-size board and a large board with unlimited height, each empty, half full and
+ * nearly full, and reported in nanoseconds and bytes allocated per operation. Operations are
+ * warmed up before they are measured, and their results are consumed so the JIT can't remove
+ * them. Allocation is read from the thread counters of the JVM, where it supports them.
+ * Usage: <code>Benchmark [measureMillis [operation]]</code>, where operation limits the run
+ * to the operations whose name contains it.
+ */
+public class Benchmark {
+
+	// <------ Constants ------>
+
+	public static final long DEFAULT_MEASURE_MILLIS = 500;
+	public static final long SEED = 42;
+	// Geometries: X, Y and Z dimension and winning length
+	public static final int[][] BOARDS = {{4, 4, 4, 4}, {8, 8, 8, 4}, {100, 100, 0, 4}};
+	// Fractions of the cells filled for the positions
+	public static final double[] FILLS = {0, 0.5, 0.9};
+	// Number of cells per tower of boards with unlimited height, to compute the fill
+	public static final int UNLIMITED_LEVELS = 4;
+	public static final String[] OPERATIONS = {"makeMove+undo", "hasWon", "getAvailableTowers",
+		"getAvailableTowers(buffer)", "deepCopy", "Randi.determineMove", "Trams.determineMove"};
+
+	private static final int PLAYERS = 2;
+	private static final int CHECK_INTERVAL = 64;
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	// Sum of the results of all operations, read at the end so they are not optimized away
+	private static long sink;
+
+	// <------ Instance variables ------>
+
+	private final Board board;
+	// Towers available in the position, the moves of makeMove+undo
+	private final int[] towers;
+	private final int[] buffer;
+	private final Strategy random = new RandomStrategy();
+	private final Strategy smart = new SmartStrategy();
+	private int next;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates the benchmark of a position.
+	 * @param board Board holding the position, it is restored after every operation
+	 */
+	//@ requires board != null;
+	public Benchmark(Board board) {
+		this.board = board;
+		this.towers = new int[board.xDim * board.yDim];
+		this.buffer = new int[towers.length];
+		board.getAvailableTowers(towers);
+	}
+
+	// <------ Commands ------>
+
+	/**
+	 * Runs the benchmark as described in the class comment.
+	 * @param args Optional: time in milliseconds to measure every operation and a filter on
+	 * the operation names
+	 * @throws IllegalBoardConstructorArgumentsException if a geometry is invalid
+	 * @throws IllegalCoordinatesException if a move of an operation is invalid (impossible)
+	 */
+	public static void main(String[] args) throws IllegalBoardConstructorArgumentsException,
+			IllegalCoordinatesException {
+		long measureMillis = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_MEASURE_MILLIS;
+		String filter = args.length > 1 ? args[1] : "";
+		System.out.println(String.format("%-14s %5s %-27s %12s %12s", "board", "fill",
+				"operation", "ns/op", "B/op"));
+		for (int[] dims : BOARDS) {
+			for (double fill : FILLS) {
+				Board board = createPosition(dims, fill);
+				Benchmark benchmark = new Benchmark(board);
+				for (int operation = 0; operation < OPERATIONS.length; operation++) {
+					String name = OPERATIONS[operation];
+					if (!name.contains(filter) 
+							|| (name.equals("hasWon") && board.getMoveCount() == 0)) {
+						continue;
+					}
+					double[] result = benchmark.measure(operation, measureMillis);
+					System.out.println(String.format("%-14s %4.0f%% %-27s %12.1f %12s",
+							dims[0] + "x" + dims[1] + "x" + dims[2], 100 * fill, name, result[0],
+							result[1] < 0 ? "n/a" : String.format("%.1f", result[1])));
+				}
+			}
+		}
+		System.out.println("(checksum " + sink + ")");
+	}
+
+	/**
+	 * Warms an operation up and measures it, each for the given time.
+	 * @param operation Index of the operation in <code>OPERATIONS</code>
+	 * @param millis Time in milliseconds to warm up and to measure
+	 * @return Nanoseconds and bytes allocated per operation, bytes negative if unknown
+	 * @throws IllegalCoordinatesException if a move is invalid (impossible)
+	 */
+	public double[] measure(int operation, long millis) throws IllegalCoordinatesException {
+		run(operation, millis);
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		long count = run(operation, millis);
+		long time = System.nanoTime() - start;
+		long bytes = allocatedBytes() - allocated;
+		return new double[] {(double) time / count, allocated < 0 ? -1 : (double) bytes / count};
+	}
+
+	// <------ Internal workings ------>
+
+	/**
+	 * Runs an operation repeatedly for the given time.
+	 * @param operation Index of the operation in <code>OPERATIONS</code>
+	 * @param millis Time in milliseconds to run
+	 * @return Number of times the operation ran
+	 * @throws IllegalCoordinatesException if a move is invalid (impossible)
+	 */
+	private long run(int operation, long millis) throws IllegalCoordinatesException {
+		long end = System.nanoTime() + millis * NANOS_PER_MILLI;
+		long count = 0;
+		long result = 0;
+		do {
+			for (int i = 0; i < CHECK_INTERVAL; i++) {
+				result += runOnce(operation);
+			}
+			count += CHECK_INTERVAL;
+		} while (System.nanoTime() - end < 0);
+		sink += result;
+		return count;
+	}
+
+	/**
+	 * Runs an operation once, leaving the board as it was.
+	 * @param operation Index of the operation in <code>OPERATIONS</code>
+	 * @return A value depending on the result of the operation
+	 * @throws IllegalCoordinatesException if a move is invalid (impossible)
+	 */
+	private long runOnce(int operation) throws IllegalCoordinatesException {
+		int player = board.getMoveCount() % PLAYERS;
+		switch (operation) {
+			case 0:
+				int tower = nextTower();
+				TowerCoordinates coords = board.getTowerCoordinates(tower);
+				board.makeMove(coords.getX(), coords.getY(), player);
+				board.undoMove();
+				return tower;
+			case 1:
+				TowerCoordinates last = board.getTowerCoordinates(board.getMove(
+						board.getMoveCount() - 1));
+				try {
+					return board.hasWon(last.getX(), last.getY()) ? 1 : 0;
+				} catch (CoordinatesOutOfBoundsException e) {
+					throw new IllegalStateException(e);
+				}
+			case 2:
+				return board.getAvailableTowers().size();
+			case 3:
+				return board.getAvailableTowers(buffer);
+			case 4:
+				return board.deepCopy().getMoveCount();
+			case 5:
+				return random.determineMove(board, player).getX();
+			default:
+				return smart.determineMove(board, player).getX();
+		}
+	}
+
+	/**
+	 * Returns the next of the towers that were available when this benchmark was created.
+	 * @return Tower index
+	 */
+	private int nextTower() {
+		int count = board.getAvailableTowerCount();
+		next = (next + 1) % count;
+		return towers[next];
+	}
+
+	/**
+	 * Creates a board of the given geometry with the given fraction of its cells filled by
+	 * random moves of alternating players, skipping moves that would win the game.
+	 * @param dims X, Y and Z dimension and winning length
+	 * @param fill Fraction of the cells to fill
+	 * @return The board
+	 * @throws IllegalBoardConstructorArgumentsException if the geometry is invalid
+	 */
+	private static Board createPosition(int[] dims, double fill)
+			throws IllegalBoardConstructorArgumentsException {
+		Board board = new Board(dims[0], dims[1], dims[2], dims[3]);
+		Random random = new Random(SEED);
+		int towers = board.xDim * board.yDim;
+		int levels = board.zDim == Board.UNLIMITED_Z ? UNLIMITED_LEVELS : board.zDim;
+		int moves = (int) (fill * towers * levels);
+		int[] available = new int[towers];
+		while (board.getMoveCount() < moves) {
+			int player = board.getMoveCount() % PLAYERS;
+			int count = board.getAvailableTowers(available);
+			int start = random.nextInt(count);
+			boolean placed = false;
+			for (int i = 0; i < count && !placed; i++) {
+				int tower = available[(start + i) % count];
+				if (board.getHeightOfTower(tower) < levels
+						&& !board.isWinningMove(tower, player)) {
+					board.applyMove(tower, player);
+					placed = true;
+				}
+			}
+			if (!placed) {
+				break;
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread so far.
+	 * @return Allocated bytes, -1 if the JVM doesn't count them
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+					Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
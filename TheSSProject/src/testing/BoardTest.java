@@ -6,15 +6,21 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import exc.CoordinatesOutOfBoundsException;
 import exc.IllegalBoardConstructorArgumentsException;
 import exc.IllegalCoordinatesException;
 import model.Board;
 import model.TowerCoordinates;
+import model.WinningLines;
 
 public class BoardTest {
 	
@@ -706,6 +712,34 @@ public class BoardTest {
 		}		
 	}
 	
+	/**
+	 * Test the remaining moves, available tower count and draw detection while filling a board 
+	 * and taking the moves back.
+	 */
+	@Test
+	public void testRemainingMoves() {
+		int cells = board.xDim * board.yDim * board.zDim;
+		int tower = 0;
+		for (int i = 0; i < cells; i++) {
+			assertEquals(cells - i, board.getRemainingMoves());
+			assertEquals(board.getAvailableTowers().size(), board.getAvailableTowerCount());
+			assertFalse(board.isFull());
+			while (!board.isAvailableTower(tower)) {
+				tower = (tower + 1) % (board.xDim * board.yDim);
+			}
+			board.applyMove(tower, (tower + board.getHeightOfTower(tower) / 2) % 2);
+			tower = (tower + 5) % (board.xDim * board.yDim);
+		}
+		assertTrue(board.isFull());
+		assertEquals(0, board.getAvailableTowerCount());
+		assertEquals(board.hasWinner(), !board.isDraw());
+		board.undoMove();
+		assertFalse(board.isFull());
+		assertFalse(board.isDraw());
+		assertEquals(1, board.getAvailableTowerCount());
+		assertEquals(Integer.MAX_VALUE, unlimitedBoard.getRemainingMoves());
+	}
+	
 	/**
 	 * Test the getAvailableTowers method.
 	 */
@@ -754,6 +788,31 @@ public class BoardTest {
 		}
 	}
 	
+	/**
+	 * Test that the buffer and bit mask versions of getAvailableTowers agree with the list.
+	 * @throws IllegalCoordinatesException in case make Move gets invalid coordinates.
+	 */
+	@Test
+	public void testgetAvailableTowersBuffer() throws IllegalCoordinatesException {
+		for (int z = MIN; z <= MAX; z++) {
+			board.makeMove(MIN, MAX, PLAYER1);
+			board.makeMove(BET, BET, PLAYER2);
+		}
+		List<TowerCoordinates> data = board.getAvailableTowers();
+		int[] buffer = new int[board.xDim * board.yDim];
+		long[] mask = new long[1];
+		assertEquals(data.size(), board.getAvailableTowers(buffer));
+		assertEquals(data.size(), board.getAvailableTowerMask(mask));
+		assertEquals(data.size(), Long.bitCount(mask[0]));
+		for (int i = 0; i < data.size(); i++) {
+			assertTrue(data.get(i) == board.getTowerCoordinates(buffer[i]));
+			assertTrue((mask[0] & (1L << buffer[i])) != 0);
+		}
+		long[] unlimitedMask = new long[1];
+		assertEquals(LENGTH * WIDTH, unlimitedBoard.getAvailableTowerMask(unlimitedMask));
+		assertEquals(LENGTH * WIDTH, Long.bitCount(unlimitedMask[0]));
+	}
+	
 	/**
 	 * Test the deep copy method of the board.
 	 * @throws IllegalCoordinatesException in case make Move gets invalid coordinates.
@@ -921,6 +980,313 @@ public class BoardTest {
 		}
 	}
 	
+	/**
+	 * Test applying and undoing moves by tower index.
+	 * @throws IllegalCoordinatesException in case make Move gets invalid coordinates.
+	 */
+	@Test
+	public void testApplyAndUndoMove() throws IllegalCoordinatesException {
+		int tower = board.getTowerIndex(BET, MIN);
+		board.makeMove(BET, MIN, PLAYER1);
+		board.applyMove(tower, PLAYER2);
+		assertEquals(2, board.getHeightOfTower(tower));
+		assertEquals(PLAYER2, board.getCellOwner(BET, MIN, 2));
+		assertEquals(2, board.getMoveCount());
+		assertEquals(tower, board.getMove(1));
+		assertEquals(tower, board.undoMove());
+		assertEquals(1, board.getHeightOfTower(tower));
+		assertTrue(board.isEmptyCell(BET, MIN, 2));
+		assertEquals(PLAYER1, board.getCellOwner(BET, MIN, 1));
+		assertEquals(1, board.getMoveCount());
+	}
+	
+	/**
+	 * Test that the last move is recognised as winning, also on a board with unlimited height.
+	 */
+	@Test
+	public void testLastMoveHasWon() {
+		for (int i = MIN; i < WIN; i++) {
+			unlimitedBoard.applyMove(unlimitedBoard.getTowerIndex(i, MIN), PLAYER1);
+			assertFalse(unlimitedBoard.lastMoveHasWon());
+		}
+		unlimitedBoard.applyMove(unlimitedBoard.getTowerIndex(WIN, MIN), PLAYER1);
+		assertTrue(unlimitedBoard.lastMoveHasWon());
+		unlimitedBoard.undoMove();
+		unlimitedBoard.applyMove(unlimitedBoard.getTowerIndex(WIN, MIN), PLAYER2);
+		assertFalse(unlimitedBoard.lastMoveHasWon());
+	}
+	
+	/**
+	 * Test that a search copy does not notify observers, while the original board does.
+	 * @throws IllegalCoordinatesException in case make Move gets invalid coordinates.
+	 */
+	@Test
+	public void testSearchCopy() throws IllegalCoordinatesException {
+		final List<Object> notifications = new ArrayList<Object>();
+		Observer observer = new Observer() {
+			@Override
+			public void update(Observable o, Object arg) {
+				notifications.add(arg);
+			}
+		};
+		Board searchBoard = board.searchCopy();
+		assertTrue(board.isNotifying());
+		assertFalse(searchBoard.isNotifying());
+		board.addObserver(observer);
+		searchBoard.addObserver(observer);
+		searchBoard.makeMove(MIN, MIN, PLAYER1);
+		assertEquals(0, notifications.size());
+		board.makeMove(MIN, MIN, PLAYER1);
+		assertEquals(1, notifications.size());
+		assertEquals(new TowerCoordinates(MIN, MIN), notifications.get(0));
+	}
+	
+	/**
+	 * Test the threat counters against counting the open lines of random positions, while 
+	 * making and taking back moves.
+	 * @throws IllegalCoordinatesException in case getCellOwner gets invalid coordinates.
+	 */
+	@Test
+	public void testThreatCounters() throws IllegalCoordinatesException {
+		Random random = new Random(LENGTH);
+		WinningLines lines = WinningLines.forGeometry(LENGTH, WIDTH, HEIGHT, WIN);
+		assertTrue(specialBoard.tracksThreats());
+		assertFalse(unlimitedBoard.tracksThreats());
+		for (int step = 0; step < 500; step++) {
+			int tower = random.nextInt(LENGTH * WIDTH);
+			if (specialBoard.getMoveCount() > 0 && (random.nextInt(3) == 0 
+					|| specialBoard.hasWinner())) {
+				specialBoard.undoMove();
+			} else if (specialBoard.isAvailableTower(tower)) {
+				Integer player = random.nextBoolean() ? PLAYER1 : PLAYER2;
+				boolean winning = specialBoard.isWinningMove(tower, player);
+				specialBoard.applyMove(tower, player);
+				assertEquals(winning, specialBoard.lastMoveHasWon());
+				assertEquals(winning, specialBoard.hasWinner());
+			}
+			for (Integer player : new Integer[] {PLAYER1, PLAYER2}) {
+				int[] open = new int[WIN + 1];
+				for (int line = 0; line < lines.lineCount; line++) {
+					int mine = 0;
+					int others = 0;
+					for (int i = 0; i < WIN; i++) {
+						int cell = lines.getCell(line, i);
+						TowerCoordinates coords = specialBoard.getTowerCoordinates(cell 
+								% (LENGTH * WIDTH));
+						Integer owner = specialBoard.getCellOwner(coords.getX(), coords.getY(), 
+								cell / (LENGTH * WIDTH) + 1);
+						if (player.equals(owner)) {
+							mine++;
+						} else if (owner != null) {
+							others++;
+						}
+					}
+					if (mine > 0 && others == 0) {
+						open[mine]++;
+					}
+				}
+				for (int pieces = 1; pieces <= WIN; pieces++) {
+					assertEquals(open[pieces], specialBoard.getOpenLineCount(player, pieces));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Test that a board with too many winning lines to count threats still finds winning 
+	 * moves through its winning lines, while random moves are made and taken back.
+	 * @throws IllegalBoardConstructorArgumentsException if the board cannot be created 
+	 * (impossible)
+	 */
+	@Test
+	public void testUncountedWinningMoves() throws IllegalBoardConstructorArgumentsException {
+		int dim = 16;
+		Board largeBoard = new Board(dim, dim, dim, 2);
+		assertTrue(WinningLines.forGeometry(dim, dim, dim, 2) != null);
+		assertFalse(largeBoard.tracksThreats());
+		Random random = new Random(dim);
+		int wins = 0;
+		for (int step = 0; step < 500; step++) {
+			int tower = random.nextInt(dim * dim);
+			if (largeBoard.getMoveCount() > 0 && (random.nextInt(3) == 0 
+					|| largeBoard.hasWinner())) {
+				largeBoard.undoMove();
+			} else if (largeBoard.isAvailableTower(tower)) {
+				Integer player = random.nextBoolean() ? PLAYER1 : PLAYER2;
+				boolean winning = largeBoard.isWinningMove(tower, player);
+				largeBoard.applyMove(tower, player);
+				assertEquals(winning, largeBoard.lastMoveHasWon());
+				wins += winning ? 1 : 0;
+			}
+		}
+		assertTrue(wins > 0);
+	}
+	
+	/**
+	 * Test that the wins found with the bit masks agree with walking the directions, on boards 
+	 * with masks of one and of two words, while random moves are made and taken back.
+	 * @throws IllegalBoardConstructorArgumentsException if the board cannot be created 
+	 * (impossible)
+	 * @throws CoordinatesOutOfBoundsException if a tower is not on the board (impossible)
+	 */
+	@Test
+	public void testBitMasks() throws IllegalBoardConstructorArgumentsException, 
+			CoordinatesOutOfBoundsException {
+		Board largerBoard = new Board(LENGTH, LENGTH, LENGTH, MAX);
+		assertTrue(board.usesBitMasks());
+		assertTrue(largerBoard.usesBitMasks());
+		assertFalse(specialBoard.usesBitMasks());
+		assertFalse(unlimitedBoard.usesBitMasks());
+		Random random = new Random(MAX);
+		for (Board masked : new Board[] {board, largerBoard}) {
+			int wins = 0;
+			for (int step = 0; step < 500; step++) {
+				int tower = random.nextInt(masked.xDim * masked.yDim);
+				if (masked.getMoveCount() > 0 && (random.nextInt(3) == 0 
+						|| masked.hasWinner())) {
+					masked.undoMove();
+				} else if (masked.isAvailableTower(tower)) {
+					Integer player = random.nextBoolean() ? PLAYER1 : PLAYER2;
+					boolean winning = masked.isWinningMove(tower, player);
+					masked.applyMove(tower, player);
+					assertEquals(winning, masked.lastMoveHasWon());
+					assertEquals(winning, walkHasWon(masked, tower));
+					wins += winning ? 1 : 0;
+				}
+			}
+			assertTrue(wins > 0);
+		}
+	}
+	
+	/**
+	 * Checks whether the top piece of a tower belongs to a winning set by walking all 
+	 * directions from it, without the winning lines of the board.
+	 * @param target Board to check
+	 * @param tower Tower index of a tower holding at least one piece
+	 * @return The top piece belongs to a winning set
+	 * @throws CoordinatesOutOfBoundsException if the tower is not on the board (impossible)
+	 */
+	private static boolean walkHasWon(Board target, int tower) 
+			throws CoordinatesOutOfBoundsException {
+		TowerCoordinates coords = target.getTowerCoordinates(tower);
+		int z = target.getHeightOfTower(tower);
+		int owner = target.getCellOwner(coords.getX(), coords.getY(), z);
+		for (int xDir = 0; xDir <= 1; xDir++) {
+			for (int yDir = -1; yDir <= 1; yDir++) {
+				for (int zDir = -1; zDir <= 1; zDir++) {
+					if ((xDir > 0 || yDir > 0 || yDir == 0 && zDir > 0) && target.directionHasWon(
+							coords.getX(), coords.getY(), z, xDir, yDir, zDir, owner)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Test the winner of a board.
+	 * @throws IllegalCoordinatesException in case make Move gets invalid coordinates.
+	 */
+	@Test
+	public void testGetWinner() throws IllegalCoordinatesException {
+		assertFalse(board.hasWinner());
+		assertNull(board.getWinner());
+		for (int i = MIN; i <= MAX; i++) {
+			board.makeMove(i, i, PLAYER2);
+		}
+		assertEquals(PLAYER2, board.getWinner());
+		board.undoMove();
+		assertFalse(board.hasWinner());
+	}
+	
+	/**
+	 * Test the symmetric hashes and the collapsing of symmetric moves.
+	 * @throws IllegalCoordinatesException in case make Move gets invalid coordinates.
+	 */
+	@Test
+	public void testSymmetries() throws IllegalCoordinatesException {
+		assertEquals(8, board.getSymmetryCount());
+		assertEquals(4, specialBoard.getSymmetryCount());
+		// Corners, edges and center of the default board
+		assertEquals(3, board.getDistinctAvailableTowers().size());
+		assertEquals(3 * 4, specialBoard.getDistinctAvailableTowers().size());
+		board.makeMove(MIN, MIN, PLAYER1);
+		Board mirrored = new Board();
+		mirrored.makeMove(MAX, MIN, PLAYER1);
+		assertEquals(mirrored.getHash(), board.getSymmetricHash(1));
+		assertEquals(mirrored.getCanonicalHash(), board.getCanonicalHash());
+		assertNotEquals(mirrored.getHash(), board.getHash());
+		// Only swapping x and y keeps the corner in place
+		assertEquals(1 | 1 << 4, board.getSymmetries());
+		assertEquals(board.xDim * (board.xDim + 1) / 2, board.getDistinctAvailableTowers().size());
+		board.makeMove(MIN, MAX, PLAYER2);
+		assertEquals(1, board.getSymmetries());
+		assertEquals(board.xDim * board.yDim, board.getDistinctAvailableTowers().size());
+	}
+	
+	/**
+	 * Test that the hash is restored by undoMove and independent of the move order.
+	 * @throws IllegalCoordinatesException in case make Move gets invalid coordinates.
+	 */
+	@Test
+	public void testHash() throws IllegalCoordinatesException {
+		long empty = board.getHash();
+		assertNotEquals(empty, specialBoard.getHash());
+		board.makeMove(MIN, MIN, PLAYER1);
+		board.makeMove(MAX, MAX, PLAYER2);
+		board.makeMove(BET, MIN, PLAYER1);
+		long position = board.getHash();
+		assertEquals(position, board.deepCopy().getHash());
+		board.undoMove();
+		board.undoMove();
+		board.undoMove();
+		assertEquals(empty, board.getHash());
+		board.makeMove(BET, MIN, PLAYER1);
+		board.makeMove(MAX, MAX, PLAYER2);
+		board.makeMove(MIN, MIN, PLAYER1);
+		assertEquals(position, board.getHash());
+		board.undoMove();
+		board.makeMove(MIN, MIN, PLAYER2);
+		assertNotEquals(position, board.getHash());
+	}
+	
+	/**
+	 * Test that boards with unlimited height grow past their initial storage and that the 
+	 * copies of the board data don't change with the board.
+	 * @throws CoordinatesOutOfBoundsException in case getTower gets invalid coordinates.
+	 */
+	@Test
+	public void testUnlimitedGrowth() throws CoordinatesOutOfBoundsException {
+		int height = 100;
+		long empty = unlimitedBoard.getHash();
+		for (int z = 0; z < height; z++) {
+			unlimitedBoard.applyMove(0, z % 2 == 0 ? PLAYER1 : PLAYER2);
+		}
+		unlimitedBoard.applyMove(1, PLAYER2);
+		List<List<Integer>> data = unlimitedBoard.deepDataCopy();
+		List<Integer> tower = unlimitedBoard.getTower(MIN, MIN);
+		assertEquals(height, unlimitedBoard.getHeightOfTower(0));
+		assertEquals(height, tower.size());
+		assertEquals(height, data.get(0).size());
+		assertEquals(LENGTH * WIDTH, data.size());
+		for (int z = 0; z < height; z++) {
+			Integer owner = z % 2 == 0 ? PLAYER1 : PLAYER2;
+			assertEquals(owner, tower.get(z));
+			assertEquals(owner, data.get(0).get(z));
+			assertEquals(owner, unlimitedBoard.getCellOwner(MIN, MIN, z + 1));
+		}
+		assertEquals(PLAYER2, data.get(1).get(0));
+		assertFalse(unlimitedBoard.hasWinner());
+		for (int z = 0; z <= height; z++) {
+			unlimitedBoard.undoMove();
+		}
+		assertEquals(empty, unlimitedBoard.getHash());
+		assertEquals(height, tower.size());
+		assertEquals(height, data.get(0).size());
+		assertTrue(unlimitedBoard.getTower(MIN, MIN).isEmpty());
+	}
+	
 //	/**
 //	 * Test for the Reset() method, now private so can not be used to test.
 //	 */
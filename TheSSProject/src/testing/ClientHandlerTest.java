@@ -0,0 +1,89 @@
+package testing;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import server.ClientHandler;
+import server.MessageWriter;
+import server.ThreadProvider;
+import view.ServerTUI;
+
+public class ClientHandlerTest {
+
+	public static final long WAIT_TIME = 10000;
+	public static final int MESSAGE_LENGTH = 100000;
+
+	/**
+	 * View that prints nothing.
+	 */
+	private static class QuietTUI extends ServerTUI {
+		@Override
+		public void printMessage(String message) {
+			// Quiet
+		}
+	}
+
+	/**
+	 * Test that messages queued together reach the client in order, and that the handler is
+	 * shut down without being held up.
+	 * @throws IOException if the connection can't be made
+	 */
+	@Test
+	public void testSendInOrder() throws IOException {
+		ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		Socket client = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort());
+		Socket accepted = listener.accept();
+		listener.close();
+		ClientHandler handler = new ClientHandler(accepted, new QuietTUI());
+		for (int i = 0; i < 10; i++) {
+			handler.sendMessage("message " + i);
+		}
+		handler.shutdown();
+		handler.start(new ThreadProvider(false));
+		BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+		for (int i = 0; i < 10; i++) {
+			assertTrue(("message " + i).equals(in.readLine()));
+		}
+		assertTrue(in.readLine() == null);
+		client.close();
+	}
+
+	/**
+	 * Test that a client that doesn't read its messages is dropped instead of holding up the
+	 * sender.
+	 * @throws IOException if the connection can't be made
+	 * @throws InterruptedException if interrupted while waiting for the drop
+	 */
+	@Test
+	public void testSlowClientDropped() throws IOException, InterruptedException {
+		ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		Socket client = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort());
+		Socket accepted = listener.accept();
+		listener.close();
+		ClientHandler handler = new ClientHandler(accepted, new QuietTUI());
+		handler.start(new ThreadProvider(false));
+		char[] chars = new char[MESSAGE_LENGTH];
+		Arrays.fill(chars, 'x');
+		String message = new String(chars);
+		long start = System.currentTimeMillis();
+		// Far more than the socket buffers hold, the client reads nothing
+		for (int i = 0; i < 2 * MessageWriter.MAX_QUEUED && !accepted.isClosed(); i++) {
+			handler.sendMessage(message);
+		}
+		while (!accepted.isClosed() && System.currentTimeMillis() - start < WAIT_TIME) {
+			Thread.sleep(10);
+		}
+		assertTrue(accepted.isClosed());
+		assertTrue(System.currentTimeMillis() - start < WAIT_TIME);
+		client.close();
+	}
+}
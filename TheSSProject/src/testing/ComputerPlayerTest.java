@@ -6,8 +6,10 @@ import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 
+import model.AlphaBetaStrategy;
 import model.Board;
 import model.ComputerPlayer;
+import model.Deadline;
 import model.RandomStrategy;
 import model.SmartStrategy;
 import model.Strategy;
@@ -17,6 +19,7 @@ public class ComputerPlayerTest {
 
 	public static final int TESTTIMES = 2;
 	public static final int ID = 1;
+	public static final long MOVE_TIME = 200;
 	private Board board;
 	private ComputerPlayer randi;
 	private ComputerPlayer trams;
@@ -85,4 +88,23 @@ public class ComputerPlayerTest {
 		TowerCoordinates coord = defaulty.determineMove(board);
 		assertTrue(board.isValidMove(coord.getX(), coord.getY()));
 	}
+	
+	/**
+	 * Test that a computer player with a move time passes its time limit to its strategy.
+	 */
+	@Test
+	public void testMoveTime() {
+		ComputerPlayer alphi = new ComputerPlayer(new AlphaBetaStrategy(MOVE_TIME * 100), ID, 
+				MOVE_TIME);
+		assertEquals(MOVE_TIME, alphi.getMoveTime());
+		assertEquals(ComputerPlayer.NO_TIME_LIMIT, randi.getMoveTime());
+		long start = System.currentTimeMillis();
+		TowerCoordinates coord = alphi.determineMove(board);
+		assertTrue(System.currentTimeMillis() - start < MOVE_TIME * 2);
+		assertTrue(board.isValidMove(coord.getX(), coord.getY()));
+		Deadline cancelled = new Deadline(MOVE_TIME);
+		cancelled.cancel();
+		coord = alphi.determineMove(board, cancelled);
+		assertTrue(board.isValidMove(coord.getX(), coord.getY()));
+	}
 }
@@ -0,0 +1,51 @@
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import model.Deadline;
+
+public class DeadlineTest {
+
+	public static final long LONG_TIME = 60000;
+	public static final long SHORT_TIME = 1000;
+
+	/**
+	 * Test that a deadline expires after its time and reports the time left until then.
+	 */
+	@Test
+	public void testExpiry() {
+		Deadline deadline = new Deadline(LONG_TIME);
+		assertFalse(deadline.isExpired());
+		assertTrue(deadline.getRemainingMillis() > LONG_TIME / 2);
+		assertTrue(deadline.getRemainingMillis() <= LONG_TIME);
+		Deadline passed = new Deadline(0);
+		assertTrue(passed.isExpired());
+		assertFalse(passed.isCancelled());
+		assertEquals(0, passed.getRemainingMillis());
+		assertFalse(new Deadline(Long.MAX_VALUE).isExpired());
+	}
+
+	/**
+	 * Test that a derived deadline ends at the earlier time and is cancelled with its parent,
+	 * but not the other way around.
+	 */
+	@Test
+	public void testWithinAndCancel() {
+		Deadline parent = new Deadline(LONG_TIME);
+		Deadline child = parent.within(SHORT_TIME);
+		assertTrue(child.getRemainingMillis() <= SHORT_TIME);
+		assertTrue(new Deadline(0).within(LONG_TIME).isExpired());
+		child.cancel();
+		assertTrue(child.isExpired());
+		assertFalse(parent.isExpired());
+		Deadline other = parent.within(LONG_TIME);
+		parent.cancel();
+		assertTrue(other.isCancelled());
+		assertTrue(other.isExpired());
+		assertEquals(0, other.getRemainingMillis());
+	}
+}
@@ -0,0 +1,195 @@
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.Player;
+import server.GameResultStruct;
+import server.GameRulesStruct;
+import server.Matchmaker;
+
+public class MatchmakerTest {
+
+	public static final GameRulesStruct RULES = new GameRulesStruct(4, 4, 4, 4);
+	public static final GameRulesStruct OTHER_RULES = new GameRulesStruct(7, 6, 0, 4);
+	// Rating difference between neighbours, matched after widening for 2 seconds only
+	public static final int SPREAD = 150;
+
+	private Matchmaker matchmaker;
+	private Player strong;
+	private Player weak;
+
+	@Before
+	public void setUp() {
+		matchmaker = new Matchmaker();
+		strong = new Player("Strong", 0);
+		weak = new Player("Weak", 1);
+		// Make the ratings differ by more than BASE_WINDOW
+		for (int i = 0; i < 10; i++) {
+			matchmaker.recordResult(new GameResultStruct(pair(strong, weak), strong.playerID));
+		}
+	}
+
+	/**
+	 * Test that players with the same rules and rating are matched on arrival, and that a
+	 * removed player is not matched anymore.
+	 */
+	@Test
+	public void testMatchOnArrival() {
+		Player a = new Player("A", 2);
+		Player b = new Player("B", 3);
+		Player c = new Player("C", 4);
+		assertNull(matchmaker.add(a, RULES, 0));
+		assertNull(matchmaker.add(b, OTHER_RULES, 0));
+		List<Player> match = matchmaker.add(c, RULES, 0);
+		assertEquals(pair(a, c), match);
+		assertEquals(1, matchmaker.size());
+		assertTrue(matchmaker.remove(b));
+		assertFalse(matchmaker.remove(b));
+		assertNull(matchmaker.add(a, OTHER_RULES, 0));
+		assertEquals(1, matchmaker.size());
+	}
+
+	/**
+	 * Test that players far apart in rating are only matched when their search window has
+	 * widened enough.
+	 */
+	@Test
+	public void testWidenWithRating() {
+		int difference = matchmaker.getRating(strong.name) - matchmaker.getRating(weak.name);
+		assertTrue(difference > Matchmaker.BASE_WINDOW);
+		assertNull(matchmaker.add(strong, RULES, 0));
+		assertNull(matchmaker.add(weak, RULES, 0));
+		assertTrue(matchmaker.widen(0).isEmpty());
+		long waited = 0;
+		while (Matchmaker.getWindow(waited) < difference) {
+			waited += 100;
+		}
+		assertTrue(matchmaker.widen(waited - 100).isEmpty());
+		List<List<Player>> matches = matchmaker.widen(waited);
+		assertEquals(1, matches.size());
+		assertEquals(pair(weak, strong), matches.get(0));
+		assertEquals(0, matchmaker.size());
+	}
+
+	/**
+	 * Test that several pairs of a bucket are matched in one pass, each with its neighbour in
+	 * rating, and that an unmatched player keeps waiting.
+	 */
+	@Test
+	public void testWidenSeveralPairs() {
+		List<Player> waiting = new ArrayList<Player>();
+		for (int i = 0; i < 5; i++) {
+			Player player = new Player("P" + i, 2 + i);
+			rate(player, Matchmaker.DEFAULT_RATING + (i - 2) * SPREAD);
+			waiting.add(player);
+			assertNull(matchmaker.add(player, RULES, 0));
+		}
+		assertEquals(5, matchmaker.size());
+		List<List<Player>> matches = matchmaker.widen(2000);
+		assertEquals(2, matches.size());
+		assertEquals(pair(waiting.get(0), waiting.get(1)), matches.get(0));
+		assertEquals(pair(waiting.get(2), waiting.get(3)), matches.get(1));
+		assertEquals(1, matchmaker.size());
+		assertTrue(matchmaker.remove(waiting.get(4)));
+	}
+
+	/**
+	 * Test that players supporting different rules are only matched in the open bucket.
+	 */
+	@Test
+	public void testOpenBucket() {
+		Player a = new Player("A", 2);
+		Player b = new Player("B", 3);
+		Player c = new Player("C", 4);
+		assertNull(matchmaker.add(a, RULES, 0));
+		assertNull(matchmaker.add(b, OTHER_RULES, 0));
+		assertTrue(matchmaker.widen(Matchmaker.OPEN_MILLIS - 1).isEmpty());
+		assertEquals(2, matchmaker.size());
+		assertEquals(1, matchmaker.widen(Matchmaker.OPEN_MILLIS).size());
+		assertNull(matchmaker.add(a, RULES, Matchmaker.OPEN_MILLIS));
+		matchmaker.widen(2 * Matchmaker.OPEN_MILLIS);
+		// a waits in the open bucket now, where a player of other rules finds it on arrival
+		assertEquals(pair(a, c), matchmaker.add(c, OTHER_RULES, 2 * Matchmaker.OPEN_MILLIS));
+	}
+
+	/**
+	 * Test that a win moves the ratings apart by an equal amount, less so the more expected it
+	 * was, and that a draw moves them together.
+	 */
+	@Test
+	public void testRatings() {
+		int strongRating = matchmaker.getRating(strong.name);
+		int weakRating = matchmaker.getRating(weak.name);
+		assertEquals(2 * Matchmaker.DEFAULT_RATING, strongRating + weakRating);
+		assertEquals(Matchmaker.DEFAULT_RATING, matchmaker.getRating("Unknown"));
+		Player newcomer = new Player("Newcomer", 2);
+		Player other = new Player("Other", 3);
+		matchmaker.recordResult(new GameResultStruct(pair(newcomer, other), other.playerID));
+		int gain = matchmaker.getRating(other.name) - Matchmaker.DEFAULT_RATING;
+		assertEquals(Matchmaker.K_FACTOR / 2, gain);
+		assertEquals(Matchmaker.DEFAULT_RATING - gain, matchmaker.getRating(newcomer.name));
+		matchmaker.recordResult(new GameResultStruct(pair(strong, weak), strong.playerID));
+		int expectedGain = matchmaker.getRating(strong.name) - strongRating;
+		assertTrue(expectedGain > 0 && expectedGain < gain);
+		strongRating = matchmaker.getRating(strong.name);
+		matchmaker.recordResult(new GameResultStruct(pair(strong, weak), GameResultStruct.DRAW));
+		assertTrue(matchmaker.getRating(strong.name) < strongRating);
+	}
+
+	/**
+	 * Test that only the ratings of the names that played most recently are kept.
+	 */
+	@Test
+	public void testRatingsBounded() {
+		int strongRating = matchmaker.getRating(strong.name);
+		assertTrue(strongRating > Matchmaker.DEFAULT_RATING);
+		for (int game = 0; 2 * game < Matchmaker.MAX_RATINGS - 2; game++) {
+			matchmaker.recordResult(new GameResultStruct(pair(new Player("A" + game, 2), 
+					new Player("B" + game, 3)), 2));
+		}
+		// Weak played as long ago as strong, but strong plays again now
+		matchmaker.recordResult(new GameResultStruct(pair(strong, new Player("C", 3)), 
+				GameResultStruct.DRAW));
+		assertTrue(matchmaker.getRating(strong.name) > Matchmaker.DEFAULT_RATING);
+		assertEquals(Matchmaker.DEFAULT_RATING, matchmaker.getRating(weak.name));
+	}
+
+	/**
+	 * Lets a player win or lose against new players until its rating reaches a target.
+	 * @param player Player to rate
+	 * @param target Rating to reach
+	 */
+	private void rate(Player player, int target) {
+		int game = 0;
+		while (matchmaker.getRating(player.name) < target) {
+			Player loser = new Player("Loser" + game++, 99);
+			matchmaker.recordResult(new GameResultStruct(pair(player, loser), player.playerID));
+		}
+		while (matchmaker.getRating(player.name) > target) {
+			Player winner = new Player("Winner" + game++, 99);
+			matchmaker.recordResult(new GameResultStruct(pair(player, winner), 99));
+		}
+	}
+
+	/**
+	 * Creates a list of two players.
+	 * @param first First player
+	 * @param second Second player
+	 * @return List of both players
+	 */
+	private static List<Player> pair(Player first, Player second) {
+		List<Player> players = new ArrayList<Player>(2);
+		players.add(first);
+		players.add(second);
+		return players;
+	}
+}
@@ -0,0 +1,114 @@
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import exc.IllegalBoardConstructorArgumentsException;
+import exc.IllegalCoordinatesException;
+import model.Board;
+import model.BookStrategy;
+import model.OpeningBook;
+import model.RandomStrategy;
+import model.SmartStrategy;
+import model.Strategy;
+import model.TowerCoordinates;
+
+public class OpeningBookTest {
+
+	public static final int PLIES = 2;
+	public static final int ID = 0;
+	public static final int OTHER_ID = 1;
+	// Distinct empty boards plus distinct boards after one move of the default board
+	public static final int POSITIONS = 1 + 3;
+
+	private OpeningBook book;
+	private Board board;
+
+	/**
+	 * Setup to test a book of the first plies of the default board, chosen by the smart
+	 * strategy.
+	 */
+	@Before
+	public void setUp() {
+		board = new Board();
+		book = OpeningBook.generate(board, new SmartStrategy(), PLIES);
+	}
+
+	/**
+	 * Test that the book holds every distinct position once and has a move for each.
+	 */
+	@Test
+	public void testLookup() {
+		assertEquals(POSITIONS, book.size());
+		assertEquals(0, board.getMoveCount());
+		assertTrue(book.lookup(board) >= 0);
+		for (int tower = 0; tower < board.xDim * board.yDim; tower++) {
+			Board played = new Board();
+			played.applyMove(tower, ID);
+			int move = book.lookup(played);
+			assertTrue(move >= 0 && played.isAvailableTower(move));
+			played.applyMove(move, OTHER_ID);
+			assertEquals(-1, book.lookup(played));
+		}
+	}
+
+	/**
+	 * Test that the book moves of symmetric positions are symmetric.
+	 * @throws IllegalCoordinatesException if a invalid move on the board is made (impossible).
+	 */
+	@Test
+	public void testSymmetricLookup() throws IllegalCoordinatesException {
+		board.makeMove(1, 1, ID);
+		Board mirrored = new Board();
+		mirrored.makeMove(board.xDim, 1, ID);
+		assertEquals(board.transformTower(book.lookup(board), 1), book.lookup(mirrored));
+	}
+
+	/**
+	 * Test that a written book is read back with the same moves, and that other geometries are
+	 * not looked up.
+	 * @throws IOException if the book can't be written or read (impossible).
+	 * @throws IllegalBoardConstructorArgumentsException if the board can't be created
+	 * (impossible).
+	 */
+	@Test
+	public void testWriteAndRead() throws IOException, IllegalBoardConstructorArgumentsException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		book.write(out);
+		OpeningBook read = OpeningBook.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(book.size(), read.size());
+		assertEquals(book.lookup(board), read.lookup(board));
+		assertEquals(-1, read.lookup(new Board(5, 5, 5, 4)));
+	}
+
+	/**
+	 * Test that the book shipped with the program is found and has moves for the first plies of 
+	 * the default board.
+	 */
+	@Test
+	public void testDefaultBook() {
+		OpeningBook shipped = OpeningBook.getDefault();
+		assertTrue(shipped.size() > POSITIONS);
+		assertTrue(shipped.lookup(board) >= 0);
+		board.applyMove(0, ID);
+		assertTrue(shipped.lookup(board) >= 0);
+	}
+
+	/**
+	 * Test that the book strategy plays the book move, and the other strategy after the book.
+	 */
+	@Test
+	public void testBookStrategy() {
+		Strategy strategy = new BookStrategy(book, new RandomStrategy());
+		assertEquals("Randi", strategy.getName());
+		TowerCoordinates coord = strategy.determineMove(board, ID);
+		assertEquals(board.getTowerCoordinates(book.lookup(board)), coord);
+	}
+}
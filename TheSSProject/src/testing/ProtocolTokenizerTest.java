@@ -0,0 +1,73 @@
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import server.Protocol;
+import server.ProtocolTokenizer;
+
+public class ProtocolTokenizerTest {
+
+	public static final String[] LINES = {"makeMove 1 2", "", " ", "   ", " makeMove", "a  b",
+		"a b ", "a b  ", "startGame 4|4|4|4 0|A|ff0000 1|B|ff0000", "x"};
+	public static final String[] NUMBERS = {"0", "-0", "+7", "42", "-1", "2147483647",
+		"-2147483648", "2147483648", "-2147483649", "99999999999", "", "-", "+", "1a", "a1",
+		"1 ", "--1"};
+
+	/**
+	 * Test that messages are split into the same tokens as by String.split.
+	 */
+	@Test
+	public void testSplit() {
+		ProtocolTokenizer tokens = new ProtocolTokenizer(ProtocolTokenizer.SPACE);
+		for (String line : LINES) {
+			String[] expected = line.split(" ");
+			tokens.reset(line);
+			assertEquals(expected.length, tokens.count());
+			for (int i = 0; i < expected.length; i++) {
+				assertEquals(expected[i], tokens.token(i));
+				assertTrue(tokens.equals(i, expected[i]));
+				assertFalse(tokens.equals(i, expected[i] + "x"));
+			}
+		}
+		ProtocolTokenizer fields = new ProtocolTokenizer(ProtocolTokenizer.PIPE);
+		String line = LINES[8];
+		tokens.reset(line);
+		fields.reset(tokens.getMessage(), tokens.start(2), tokens.end(2));
+		assertEquals(3, fields.count());
+		assertEquals("A", fields.token(1));
+		assertEquals("0|A|ff0000", fields.toString());
+		assertTrue(tokens.contains(1, ProtocolTokenizer.PIPE));
+		assertFalse(tokens.contains(0, ProtocolTokenizer.PIPE));
+	}
+
+	/**
+	 * Test that commands are recognized and tokens parsed like Integer.parseInt does.
+	 */
+	@Test
+	public void testCommandAndParse() {
+		ProtocolTokenizer tokens = new ProtocolTokenizer(ProtocolTokenizer.SPACE);
+		String[] commands = {Protocol.Client.SENDCAPABILITIES, Protocol.Client.MAKEMOVE};
+		assertTrue(commands[1] == tokens.reset("makeMove 1 2").command(commands));
+		assertTrue(ProtocolTokenizer.UNKNOWN == tokens.reset("makeMov 1 2").command(commands));
+		assertTrue(ProtocolTokenizer.UNKNOWN == tokens.reset("").command(commands));
+		ProtocolTokenizer fields = new ProtocolTokenizer(ProtocolTokenizer.PIPE);
+		for (String number : NUMBERS) {
+			fields.reset("x|" + number + "|y");
+			Integer expected = null;
+			try {
+				expected = Integer.parseInt(number);
+			} catch (NumberFormatException e) {
+				// Expected is null
+			}
+			try {
+				assertEquals(expected, Integer.valueOf(fields.parseInt(1)));
+			} catch (NumberFormatException e) {
+				assertTrue(expected == null);
+			}
+		}
+	}
+}
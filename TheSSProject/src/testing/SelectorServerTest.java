@@ -0,0 +1,234 @@
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Observable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import server.ClientCapabilitiesStruct;
+import server.ClientHandler;
+import server.EncodedMessage;
+import server.SelectorConnection;
+import server.SelectorServer;
+import server.Server;
+import view.ServerTUI;
+
+public class SelectorServerTest {
+
+	public static final long WAIT_TIME = 10000;
+	public static final int MESSAGE_LENGTH = 100000;
+	public static final int MESSAGE_COUNT = 50;
+	public static final String DISCONNECTED = "disconnected";
+	// Port of the recording server, which never listens on it
+	public static final int UNUSED_PORT = 2000;
+
+	// Names of received capabilities and disconnects, in the order the handlers saw them
+	private BlockingQueue<String> events;
+	private BlockingQueue<ClientHandler> handlers;
+	private SelectorServer selector;
+
+	/**
+	 * View that only records the disconnects of the handlers.
+	 */
+	private class RecordingTUI extends ServerTUI {
+		@Override
+		public void printMessage(String message) {
+			if (message.endsWith(" " + DISCONNECTED)) {
+				events.add(DISCONNECTED);
+			}
+		}
+	}
+
+	/**
+	 * Server that records the handlers of the connections and the capabilities they receive,
+	 * instead of making players of them.
+	 */
+	private class RecordingServer extends Server {
+		/**
+		 * Creates a recording server, it doesn't listen for connections itself.
+		 */
+		RecordingServer() {
+			super(UNUSED_PORT, false, new RecordingTUI());
+		}
+
+		@Override
+		public void initConnection(ClientHandler peer) {
+			peer.addObserver(this);
+			handlers.add(peer);
+		}
+
+		@Override
+		public void update(Observable o, Object arg) {
+			if (arg instanceof ClientCapabilitiesStruct) {
+				events.add(((ClientCapabilitiesStruct) arg).playerName);
+			}
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		events = new LinkedBlockingQueue<String>();
+		handlers = new LinkedBlockingQueue<ClientHandler>();
+		selector = new SelectorServer(0, 2, new RecordingTUI(), new RecordingServer());
+		new Thread(selector, "SelectorServer-0").start();
+	}
+
+	@After
+	public void tearDown() {
+		selector.shutdown();
+	}
+
+	/**
+	 * Test that a line arriving one byte at a time is handed to the handler once complete.
+	 * @throws IOException if the connection can't be made
+	 * @throws InterruptedException if interrupted while waiting for the handler
+	 */
+	@Test
+	public void testLineByteByByte() throws IOException, InterruptedException {
+		Socket client = connect();
+		OutputStream out = client.getOutputStream();
+		byte[] line = capabilities("Slow").getBytes(EncodedMessage.CHARSET);
+		for (byte b : line) {
+			out.write(b);
+			out.flush();
+			Thread.sleep(1);
+		}
+		assertEquals("Slow", nextEvent());
+		client.close();
+		assertEquals(DISCONNECTED, nextEvent());
+	}
+
+	/**
+	 * Test that lines arriving in one write are all handed to the handler, in order, and
+	 * before the disconnect that follows them.
+	 * @throws IOException if the connection can't be made
+	 * @throws InterruptedException if interrupted while waiting for the handler
+	 */
+	@Test
+	public void testLinesInOneWrite() throws IOException, InterruptedException {
+		Socket client = connect();
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			lines.append(capabilities("P" + i));
+		}
+		client.getOutputStream().write(lines.toString().getBytes(EncodedMessage.CHARSET));
+		client.close();
+		for (int i = 0; i < 100; i++) {
+			assertEquals("P" + i, nextEvent());
+		}
+		assertEquals(DISCONNECTED, nextEvent());
+		assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Test that a client sending a line longer than any message of the protocol is
+	 * disconnected, after the lines it sent before are handled.
+	 * @throws IOException if the connection can't be made
+	 * @throws InterruptedException if interrupted while waiting for the handler
+	 */
+	@Test
+	public void testLineTooLong() throws IOException, InterruptedException {
+		Socket client = connect();
+		byte[] line = new byte[SelectorConnection.MAX_LINE_LENGTH + 1];
+		Arrays.fill(line, (byte) 'x');
+		OutputStream out = client.getOutputStream();
+		out.write(capabilities("Long").getBytes(EncodedMessage.CHARSET));
+		out.write(line);
+		assertEquals("Long", nextEvent());
+		assertEquals(DISCONNECTED, nextEvent());
+		assertTrue(isClosedByServer(client));
+		client.close();
+	}
+
+	/**
+	 * Test that messages queued faster than the client reads them reach it in order, and that
+	 * the connection is closed by a shutdown only once they are written.
+	 * @throws IOException if the connection can't be made
+	 * @throws InterruptedException if interrupted while waiting for the handler
+	 */
+	@Test
+	public void testSendInOrder() throws IOException, InterruptedException {
+		Socket client = connect();
+		ClientHandler handler = handlers.poll(WAIT_TIME, TimeUnit.MILLISECONDS);
+		char[] chars = new char[MESSAGE_LENGTH];
+		Arrays.fill(chars, 'x');
+		String message = new String(chars);
+		// Far more than the socket buffers hold, so most is written once the socket is writable
+		for (int i = 0; i < MESSAGE_COUNT; i++) {
+			handler.sendMessage(message + i);
+		}
+		handler.shutdown();
+		Thread.sleep(100);
+		BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(),
+				EncodedMessage.CHARSET));
+		for (int i = 0; i < MESSAGE_COUNT; i++) {
+			assertEquals(message + i, in.readLine());
+		}
+		assertNull(in.readLine());
+		client.close();
+		// Shut down on purpose, so not reported as a disconnect
+		assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Connects a client to the selector server and waits for its handler.
+	 * @return Socket of the client
+	 * @throws IOException if the connection can't be made
+	 * @throws InterruptedException if interrupted while waiting for the handler
+	 */
+	private Socket connect() throws IOException, InterruptedException {
+		Socket client = new Socket(InetAddress.getLoopbackAddress(), selector.getLocalPort());
+		ClientHandler handler = handlers.poll(WAIT_TIME, TimeUnit.MILLISECONDS);
+		assertTrue(handler != null);
+		handlers.add(handler);
+		return client;
+	}
+
+	/**
+	 * Waits for the next capabilities or disconnect seen by a handler.
+	 * @return Name of the received capabilities, or DISCONNECTED
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private String nextEvent() throws InterruptedException {
+		return events.poll(WAIT_TIME, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Checks whether the server closed the connection of a client.
+	 * @param client Socket of the client
+	 * @return The client reads the end of the stream, or finds the connection reset
+	 * @throws IOException if reading fails otherwise
+	 */
+	private static boolean isClosedByServer(Socket client) throws IOException {
+		try {
+			return client.getInputStream().read() < 0;
+		} catch (SocketException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Creates a capabilities line of a client.
+	 * @param name Name of the player
+	 * @return Line with the capabilities, terminated by a newline
+	 */
+	private static String capabilities(String name) {
+		return "sendCapabilities 2 " + name + " 0 4 4 4 4 0 0\n";
+	}
+}
@@ -0,0 +1,62 @@
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import server.EncodedMessage;
+import server.ServerMessages;
+
+public class ServerMessagesTest {
+
+	public static final int[] VALUES = {0, 1, 9, 10, 99, 100, 12345, Integer.MAX_VALUE,
+		Integer.MIN_VALUE};
+
+	/**
+	 * Test that the messages encoded straight to bytes equal the generated Strings.
+	 */
+	@Test
+	public void testEncoders() {
+		for (int value : VALUES) {
+			assertEquals(ServerMessages.genTurnOfPlayerString(value),
+					ServerMessages.encodeTurnOfPlayer(value).toString());
+			assertEquals(ServerMessages.genNotifyMoveString(value, 1, 4),
+					ServerMessages.encodeNotifyMove(value, 1, 4).toString());
+			assertEquals(ServerMessages.genNotifyMoveString(3, value, value),
+					ServerMessages.encodeNotifyMove(3, value, value).toString());
+		}
+		assertTrue(ServerMessages.encodeTurnOfPlayer(1) == ServerMessages.encodeTurnOfPlayer(1));
+	}
+
+	/**
+	 * Test that an encoded message holds the message and a line separator, and that every
+	 * recipient gets a read-only buffer of its own.
+	 * @throws IOException if writing to the stream fails (impossible)
+	 */
+	@Test
+	public void testEncodedMessage() throws IOException {
+		EncodedMessage message = ServerMessages.encodeNotifyMove(1, 3, 2);
+		byte[] expected = (ServerMessages.genNotifyMoveString(1, 3, 2) + System.lineSeparator())
+				.getBytes(EncodedMessage.CHARSET);
+		assertEquals(expected.length, message.getLength());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		message.writeTo(out);
+		assertEquals(new String(expected, EncodedMessage.CHARSET),
+				new String(out.toByteArray(), EncodedMessage.CHARSET));
+		ByteBuffer first = message.getBuffer();
+		ByteBuffer second = message.getBuffer();
+		assertTrue(first.isReadOnly());
+		first.get(new byte[expected.length]);
+		assertEquals(0, first.remaining());
+		assertEquals(expected.length, second.remaining());
+		assertEquals(expected[0], second.get());
+		EncodedMessage text = new EncodedMessage("error 4");
+		assertEquals("error 4", text.toString());
+		assertEquals(7 + System.lineSeparator().length(), text.getLength());
+	}
+}
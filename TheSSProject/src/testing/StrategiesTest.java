@@ -1,23 +1,34 @@
 package testing;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import exc.IllegalBoardConstructorArgumentsException;
 import exc.IllegalCoordinatesException;
+import model.AlphaBetaStrategy;
 import model.Board;
+import model.Deadline;
+import model.MonteCarloStrategy;
 import model.RandomStrategy;
 import model.SmartStrategy;
 import model.Strategy;
 import model.TowerCoordinates;
+import model.TranspositionTable;
 
 public class StrategiesTest {
 
 	public static final int ID = 1;
+	public static final int OTHER_ID = 2;
+	public static final long BUDGET = 200;
+	public static final int THREADS = 4;
+	public static final int LARGE_DIM = 12;
 	private Strategy randi;
 	private Strategy trams;
+	private Strategy alphi;
 	private Board board;
 	
 	/**
@@ -27,6 +38,7 @@ public class StrategiesTest {
 	public void setup() {
 		randi = new RandomStrategy();
 		trams = new SmartStrategy();
+		alphi = new AlphaBetaStrategy(BUDGET);
 		board = new Board();
 	}
 	
@@ -81,4 +93,207 @@ public class StrategiesTest {
 		assertEquals(choice, coord);
 	}
 	
+	/**
+	 * Test if the smart strategy blocks a win of the opponent.
+	 * @throws IllegalCoordinatesException if a invalid move on the board is made (impossible). 
+	 */
+	@Test
+	public void testTramsBlocks() throws IllegalCoordinatesException {
+		TowerCoordinates choice = new TowerCoordinates(3, 2);
+		board.makeMove(1, 2, OTHER_ID);
+		board.makeMove(4, 4, ID);
+		board.makeMove(2, 2, OTHER_ID);
+		board.makeMove(1, 4, ID);
+		board.makeMove(4, 2, OTHER_ID);
+		assertEquals(choice, trams.determineMove(board, ID));
+		assertEquals(5, board.getMoveCount());
+	}
+	
+	/**
+	 * Test if the smart strategy avoids the move that lets the opponent win on top of it.
+	 * @throws IllegalCoordinatesException if a invalid move on the board is made (impossible). 
+	 */
+	@Test
+	public void testTramsAvoidsGivingWin() throws IllegalCoordinatesException {
+		TowerCoordinates trap = new TowerCoordinates(4, 2);
+		board.makeMove(1, 2, ID);
+		board.makeMove(2, 2, ID);
+		board.makeMove(3, 2, OTHER_ID);
+		for (int x = 1; x <= 3; x++) {
+			board.makeMove(x, 2, OTHER_ID);
+		}
+		for (int i = 0; i < 20; i++) {
+			assertNotEquals(trap, trams.determineMove(board, ID));
+		}
+	}
+	
+	/**
+	 * Test the getName() method of the alpha-beta strategy.
+	 */
+	@Test
+	public void testAlphisName() {
+		assertEquals("Alphi", alphi.getName());
+	}
+	
+	/**
+	 * Test if the alpha-beta strategy returns the winning move and stays within its time budget.
+	 * @throws IllegalCoordinatesException if a invalid move on the board is made (impossible). 
+	 */
+	@Test
+	public void testAlphiTakesWin() throws IllegalCoordinatesException {
+		TowerCoordinates choice = new TowerCoordinates(2, 3);
+		for (int x = 1; x <= 3; x++) {
+			board.makeMove(x, 3, ID);
+			board.makeMove(x, 1, OTHER_ID);
+		}
+		board.makeMove(4, 4, OTHER_ID);
+		long start = System.currentTimeMillis();
+		TowerCoordinates coord = alphi.determineMove(board, ID);
+		assertTrue(System.currentTimeMillis() - start < BUDGET * 2);
+		assertEquals(new TowerCoordinates(4, 3), coord);
+		assertEquals(choice, alphi.determineMove(boardWithColumn(choice), ID));
+	}
+	
+	/**
+	 * Test if the alpha-beta strategy blocks a win of the opponent.
+	 * @throws IllegalCoordinatesException if a invalid move on the board is made (impossible). 
+	 */
+	@Test
+	public void testAlphiBlocks() throws IllegalCoordinatesException {
+		TowerCoordinates choice = new TowerCoordinates(3, 2);
+		board.makeMove(1, 2, OTHER_ID);
+		board.makeMove(4, 4, ID);
+		board.makeMove(2, 2, OTHER_ID);
+		board.makeMove(1, 4, ID);
+		board.makeMove(4, 2, OTHER_ID);
+		TowerCoordinates coord = alphi.determineMove(board, ID);
+		assertEquals(choice, coord);
+		assertEquals(5, board.getMoveCount());
+	}
+	
+	/**
+	 * Test if the alpha-beta strategy returns a valid move within its time budget on a board 
+	 * with unlimited height.
+	 * @throws IllegalCoordinatesException if a invalid move on the board is made (impossible). 
+	 * @throws IllegalBoardConstructorArgumentsException if the board can't be created 
+	 * (impossible). 
+	 */
+	@Test
+	public void testAlphiUnlimited() throws IllegalCoordinatesException, 
+			IllegalBoardConstructorArgumentsException {
+		Board unlimited = new Board(Board.DEFAULT_DIM, Board.DEFAULT_DIM, Board.UNLIMITED_Z, 
+				Board.DEFAULT_WIN);
+		unlimited.makeMove(1, 1, OTHER_ID);
+		long start = System.currentTimeMillis();
+		TowerCoordinates coord = alphi.determineMove(unlimited, ID);
+		assertTrue(System.currentTimeMillis() - start < BUDGET * 2);
+		assertTrue(unlimited.isValidMove(coord.getX(), coord.getY()));
+	}
+	
+	/**
+	 * Test if the alpha-beta strategy searching with several threads blocks a win of the 
+	 * opponent within its time budget.
+	 * @throws IllegalCoordinatesException if a invalid move on the board is made (impossible). 
+	 */
+	@Test
+	public void testAlphiParallel() throws IllegalCoordinatesException {
+		Strategy parallel = new AlphaBetaStrategy(BUDGET, new TranspositionTable(), THREADS);
+		board.makeMove(2, 1, OTHER_ID);
+		board.makeMove(1, 1, ID);
+		board.makeMove(2, 2, OTHER_ID);
+		board.makeMove(1, 2, ID);
+		board.makeMove(2, 3, OTHER_ID);
+		long start = System.currentTimeMillis();
+		TowerCoordinates coord = parallel.determineMove(board, ID);
+		assertTrue(System.currentTimeMillis() - start < BUDGET * 2);
+		assertEquals(new TowerCoordinates(2, 4), coord);
+		coord = parallel.determineMove(board, OTHER_ID);
+		assertEquals(new TowerCoordinates(2, 4), coord);
+	}
+	
+	/**
+	 * Test if the searching strategies return a valid move by the deadline, well before their 
+	 * own time budget, and at once when the deadline is cancelled.
+	 */
+	@Test
+	public void testDeadlines() {
+		Strategy[] strategies = {new AlphaBetaStrategy(BUDGET * 100, THREADS), 
+			new MonteCarloStrategy(BUDGET * 100)};
+		for (Strategy strategy : strategies) {
+			long start = System.currentTimeMillis();
+			TowerCoordinates coord = strategy.determineMove(board, ID, new Deadline(BUDGET));
+			assertTrue(System.currentTimeMillis() - start < BUDGET * 2);
+			assertTrue(board.isValidMove(coord.getX(), coord.getY()));
+			Deadline cancelled = new Deadline(BUDGET * 100);
+			cancelled.cancel();
+			start = System.currentTimeMillis();
+			coord = strategy.determineMove(board, ID, cancelled);
+			assertTrue(System.currentTimeMillis() - start < BUDGET);
+			assertTrue(board.isValidMove(coord.getX(), coord.getY()));
+		}
+		assertEquals(0, board.getMoveCount());
+	}
+	
+	/**
+	 * Test the getName() method of the Monte Carlo strategy.
+	 */
+	@Test
+	public void testMontysName() {
+		assertEquals("Monty", new MonteCarloStrategy(BUDGET).getName());
+	}
+	
+	/**
+	 * Test if the Monte Carlo strategy returns the winning move and blocks a win of the 
+	 * opponent.
+	 * @throws IllegalCoordinatesException if a invalid move on the board is made (impossible). 
+	 */
+	@Test
+	public void testMontyForcedMoves() throws IllegalCoordinatesException {
+		Strategy monty = new MonteCarloStrategy(BUDGET);
+		TowerCoordinates choice = new TowerCoordinates(2, 3);
+		assertEquals(choice, monty.determineMove(boardWithColumn(choice), ID));
+		board.makeMove(choice.getX(), choice.getY(), ID);
+		board.makeMove(1, 1, OTHER_ID);
+		board.makeMove(choice.getX(), choice.getY(), ID);
+		board.makeMove(4, 4, OTHER_ID);
+		board.makeMove(choice.getX(), choice.getY(), ID);
+		assertEquals(choice, monty.determineMove(board, OTHER_ID));
+	}
+	
+	/**
+	 * Test if the Monte Carlo strategy plays valid moves within its time budget during a game 
+	 * on a large board with unlimited height, reusing its tree between moves.
+	 * @throws IllegalCoordinatesException if a invalid move on the board is made (impossible). 
+	 * @throws IllegalBoardConstructorArgumentsException if the board can't be created 
+	 * (impossible). 
+	 */
+	@Test
+	public void testMontyUnlimited() throws IllegalCoordinatesException, 
+			IllegalBoardConstructorArgumentsException {
+		Strategy monty = new MonteCarloStrategy(BUDGET);
+		Board unlimited = new Board(LARGE_DIM, LARGE_DIM, Board.UNLIMITED_Z, Board.DEFAULT_WIN);
+		for (int i = 0; i < 3; i++) {
+			long start = System.currentTimeMillis();
+			TowerCoordinates coord = monty.determineMove(unlimited, ID);
+			assertTrue(System.currentTimeMillis() - start < BUDGET * 2);
+			unlimited.makeMove(coord.getX(), coord.getY(), ID);
+			coord = randi.determineMove(unlimited, OTHER_ID);
+			unlimited.makeMove(coord.getX(), coord.getY(), OTHER_ID);
+		}
+	}
+	
+	/**
+	 * Creates a board where player ID has three pieces stacked in a tower.
+	 * @param tower Coordinates of the tower
+	 * @return Board with the stacked pieces
+	 * @throws IllegalCoordinatesException if a invalid move on the board is made (impossible). 
+	 */
+	private Board boardWithColumn(TowerCoordinates tower) throws IllegalCoordinatesException {
+		Board result = new Board();
+		for (int i = 0; i < 3; i++) {
+			result.makeMove(tower.getX(), tower.getY(), ID);
+			result.makeMove(1, 1 + i, OTHER_ID);
+		}
+		return result;
+	}
 }
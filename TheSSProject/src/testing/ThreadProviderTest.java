@@ -0,0 +1,64 @@
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import server.ThreadProvider;
+
+public class ThreadProviderTest {
+
+	public static final long JOIN_TIME = 5000;
+
+	/**
+	 * Test that started threads run their task under the given name, and are virtual only if
+	 * asked for and supported.
+	 * @throws InterruptedException if interrupted while waiting for a thread
+	 */
+	@Test
+	public void testStart() throws InterruptedException {
+		ThreadProvider platform = new ThreadProvider(false);
+		ThreadProvider virtual = new ThreadProvider(true);
+		assertFalse(platform.isVirtual());
+		assertEquals(ThreadProvider.isVirtualSupported(), virtual.isVirtual());
+		for (ThreadProvider provider : new ThreadProvider[] {platform, virtual}) {
+			final AtomicBoolean ran = new AtomicBoolean();
+			Thread thread = provider.start(new Runnable() {
+				@Override
+				public void run() {
+					ran.set(true);
+				}
+			}, "Test");
+			thread.join(JOIN_TIME);
+			assertTrue(ran.get());
+			assertEquals("Test", thread.getName());
+		}
+	}
+
+	/**
+	 * Test that the executors of both kinds of providers run their tasks.
+	 * @throws InterruptedException if interrupted while waiting for the tasks
+	 */
+	@Test
+	public void testExecutor() throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(4);
+		for (ThreadProvider provider : new ThreadProvider[] {new ThreadProvider(false), 
+			new ThreadProvider(true)}) {
+			for (int i = 0; i < 2; i++) {
+				provider.getExecutor().execute(new Runnable() {
+					@Override
+					public void run() {
+						done.countDown();
+					}
+				});
+			}
+		}
+		assertTrue(done.await(JOIN_TIME, TimeUnit.MILLISECONDS));
+	}
+}
@@ -0,0 +1,308 @@
+package testing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import exc.IllegalBoardConstructorArgumentsException;
+import model.AlphaBetaStrategy;
+import model.Board;
+import model.ComputerPlayer;
+import model.MonteCarloStrategy;
+import model.RandomStrategy;
+import model.SmartStrategy;
+import model.Strategy;
+import model.TowerCoordinates;
+
+/**
+ * Headless self-play tournament: every pair of strategies plays a number of games on every
+ * board geometry, each strategy starting half of them. Games run in parallel on a thread pool.
+ * Reports the score of every pairing with its 95% confidence interval and, per strategy and
+ * geometry, the average and 99th percentile time per move and the positions searched per
+ * second.
+ * Usage: <code>Tournament [games [moveTime [threads [strategies [boards]]]]]</code>, where
+ * strategies is a comma separated list of Randi, Trams, Alphi and Monty and boards a comma
+ * separated list of geometries <code>XxYxZxWIN</code>, Z 0 for unlimited height.
+ */
+public class Tournament {
+
+	// <------ Constants ------>
+
+	public static final int DEFAULT_GAMES = 100;
+	public static final long DEFAULT_MOVE_TIME = 50;
+	public static final String DEFAULT_STRATEGIES = "Randi,Trams,Alphi,Monty";
+	public static final String DEFAULT_BOARDS = "4x4x4x4,7x6x0x4";
+	// Games on boards with unlimited height end in a draw after this many moves per tower
+	public static final int MOVES_PER_TOWER = 4;
+	// Quantile of the normal distribution for a 95% confidence interval
+	public static final double Z_95 = 1.96;
+	public static final double PERCENTILE = 0.99;
+
+	private static final int DRAW = -1;
+	private static final double NANOS_PER_MILLI = 1e6;
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	// <------ Instance variables ------>
+
+	private final int games;
+	private final long moveTime;
+	private final String[] strategies;
+
+	// <------ Constructors ------>
+
+	/**
+	 * Creates a tournament between the given strategies.
+	 * @param games Number of games per pairing and geometry
+	 * @param moveTime Time in milliseconds per move for searching strategies
+	 * @param strategies Names of the strategies
+	 */
+	//@ requires games > 0 && moveTime > 0 && strategies.length > 1;
+	public Tournament(int games, long moveTime, String[] strategies) {
+		this.games = games;
+		this.moveTime = moveTime;
+		this.strategies = strategies;
+	}
+
+	// <------ Commands ------>
+
+	/**
+	 * Runs the tournament with the arguments described in the class comment.
+	 * @param args Optional: games, move time, threads, strategies and boards
+	 * @throws IllegalBoardConstructorArgumentsException if a geometry is invalid
+	 * @throws InterruptedException if the tournament is interrupted
+	 * @throws ExecutionException if a game fails
+	 */
+	public static void main(String[] args) throws IllegalBoardConstructorArgumentsException,
+			InterruptedException, ExecutionException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+		long moveTime = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_MOVE_TIME;
+		int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		String[] strategies = (args.length > 3 ? args[3] : DEFAULT_STRATEGIES).split(",");
+		String[] boards = (args.length > 4 ? args[4] : DEFAULT_BOARDS).split(",");
+		Tournament tournament = new Tournament(games, moveTime, strategies);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			for (String geometry : boards) {
+				int[] dims = parseGeometry(geometry);
+				// Validates the geometry before any game is started
+				new Board(dims[0], dims[1], dims[2], dims[3]);
+				tournament.play(pool, dims);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Plays all games on one geometry and prints the results.
+	 * @param pool Thread pool to play the games on
+	 * @param dims X, Y and Z dimension and winning length of the boards
+	 * @throws InterruptedException if the tournament is interrupted
+	 * @throws ExecutionException if a game fails
+	 */
+	public void play(ExecutorService pool, final int[] dims) throws InterruptedException,
+			ExecutionException {
+		final Statistics[] statistics = new Statistics[strategies.length];
+		for (int i = 0; i < strategies.length; i++) {
+			statistics[i] = new Statistics();
+		}
+		List<int[]> pairings = new ArrayList<int[]>();
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		for (int a = 0; a < strategies.length; a++) {
+			for (int b = a + 1; b < strategies.length; b++) {
+				for (int game = 0; game < games; game++) {
+					// Alternate the first player, the game reports the index of the winner
+					final int[] order = game % 2 == 0 ? new int[] {a, b} : new int[] {b, a};
+					pairings.add(order);
+					results.add(pool.submit(new Callable<Integer>() {
+						@Override
+						public Integer call() throws IllegalBoardConstructorArgumentsException {
+							return playGame(dims, order, statistics);
+						}
+					}));
+				}
+			}
+		}
+		int[][] wins = new int[strategies.length][strategies.length];
+		int[][] draws = new int[strategies.length][strategies.length];
+		for (int i = 0; i < results.size(); i++) {
+			int[] order = pairings.get(i);
+			int winner = results.get(i).get();
+			if (winner == DRAW) {
+				draws[order[0]][order[1]]++;
+				draws[order[1]][order[0]]++;
+			} else {
+				wins[order[winner]][order[1 - winner]]++;
+			}
+		}
+		System.out.println(String.format("Board %dx%dx%d, winning length %d, %d games per "
+				+ "pairing, %d ms per move", dims[0], dims[1], dims[2], dims[3], games, moveTime));
+		for (int a = 0; a < strategies.length; a++) {
+			for (int b = a + 1; b < strategies.length; b++) {
+				double score = (wins[a][b] + draws[a][b] / 2.0) / games;
+				double[] interval = wilsonInterval(score, games);
+				System.out.println(String.format("  %s vs %s: %d wins, %d losses, %d draws, "
+						+ "score %.1f%% [%.1f%%, %.1f%%]", strategies[a], strategies[b],
+						wins[a][b], wins[b][a], draws[a][b], 100 * score, 100 * interval[0],
+						100 * interval[1]));
+			}
+		}
+		for (int i = 0; i < strategies.length; i++) {
+			System.out.println("  " + strategies[i] + ": " + statistics[i]);
+		}
+	}
+
+	// <------ Internal workings ------>
+
+	/**
+	 * Plays one game between two strategies.
+	 * @param dims X, Y and Z dimension and winning length of the board
+	 * @param order Indices of the strategies, in the order they move
+	 * @param statistics Statistics of all strategies, by index
+	 * @return Index in <code>order</code> of the winner, DRAW for a draw
+	 * @throws IllegalBoardConstructorArgumentsException if the geometry is invalid
+	 */
+	private int playGame(int[] dims, int[] order, Statistics[] statistics)
+			throws IllegalBoardConstructorArgumentsException {
+		Board board = new Board(dims[0], dims[1], dims[2], dims[3]);
+		board.setNotifying(false);
+		Strategy[] playing = new Strategy[order.length];
+		ComputerPlayer[] players = new ComputerPlayer[order.length];
+		long[][] times = new long[order.length][];
+		int[] moves = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			playing[i] = createStrategy(strategies[order[i]]);
+			players[i] = new ComputerPlayer(playing[i], i, moveTime);
+			times[i] = new long[16];
+		}
+		int limit = board.zDim == Board.UNLIMITED_Z ? board.xDim * board.yDim * MOVES_PER_TOWER
+				: Integer.MAX_VALUE;
+		int turn = 0;
+		int winner = DRAW;
+		while (!board.isDraw() && board.getMoveCount() < limit) {
+			long start = System.nanoTime();
+			TowerCoordinates move = players[turn].determineMove(board);
+			long time = System.nanoTime() - start;
+			if (moves[turn] == times[turn].length) {
+				times[turn] = Arrays.copyOf(times[turn], moves[turn] * 2);
+			}
+			times[turn][moves[turn]] = time;
+			moves[turn]++;
+			if (!board.isValidMove(move.getX(), move.getY())) {
+				// An invalid move loses the game
+				winner = 1 - turn;
+				break;
+			}
+			board.applyMove(board.getTowerIndex(move.getX(), move.getY()), turn);
+			if (board.hasWinner()) {
+				winner = turn;
+				break;
+			}
+			turn = (turn + 1) % order.length;
+		}
+		for (int i = 0; i < order.length; i++) {
+			statistics[order[i]].add(Arrays.copyOf(times[i], moves[i]),
+					playing[i].getPositionsSearched());
+		}
+		return winner;
+	}
+
+	/**
+	 * Creates a new instance of a strategy, so games don't share state.
+	 * @param name Name of the strategy
+	 * @return The strategy
+	 */
+	private Strategy createStrategy(String name) {
+		switch (name.toLowerCase()) {
+			case "randi":
+				return new RandomStrategy();
+			case "trams":
+				return new SmartStrategy();
+			case "alphi":
+				return new AlphaBetaStrategy(moveTime);
+			case "monty":
+				return new MonteCarloStrategy(moveTime);
+			default:
+				throw new IllegalArgumentException("Unknown strategy: " + name);
+		}
+	}
+
+	/**
+	 * Parses a geometry of the form <code>XxYxZxWIN</code>.
+	 * @param geometry Geometry to parse
+	 * @return X, Y and Z dimension and winning length
+	 */
+	private static int[] parseGeometry(String geometry) {
+		String[] parts = geometry.split("x");
+		if (parts.length != 4) {
+			throw new IllegalArgumentException("Geometry is not of the form XxYxZxWIN: "
+					+ geometry);
+		}
+		int[] dims = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			dims[i] = Integer.parseInt(parts[i].trim());
+		}
+		return dims;
+	}
+
+	/**
+	 * Returns the Wilson score interval of a score for a 95% confidence level.
+	 * @param score Fraction of the points scored
+	 * @param games Number of games
+	 * @return Lower and upper bound of the interval
+	 */
+	private static double[] wilsonInterval(double score, int games) {
+		double z2 = Z_95 * Z_95 / games;
+		double center = (score + z2 / 2) / (1 + z2);
+		double margin = Z_95 * Math.sqrt(score * (1 - score) / games + z2 / (4 * games))
+				/ (1 + z2);
+		return new double[] {Math.max(0, center - margin), Math.min(1, center + margin)};
+	}
+
+	/**
+	 * Move times and positions searched by one strategy, collected from all its games.
+	 */
+	private static class Statistics {
+		private long[] times = new long[0];
+		private int moves;
+		private long totalTime;
+		private long positions;
+
+		/**
+		 * Adds the results of one game.
+		 * @param gameTimes Time of every move in nanoseconds
+		 * @param gamePositions Positions searched in the game
+		 */
+		synchronized void add(long[] gameTimes, long gamePositions) {
+			if (moves + gameTimes.length > times.length) {
+				times = Arrays.copyOf(times, Math.max(times.length * 2, moves + gameTimes.length));
+			}
+			System.arraycopy(gameTimes, 0, times, moves, gameTimes.length);
+			moves += gameTimes.length;
+			for (long time : gameTimes) {
+				totalTime += time;
+			}
+			positions += gamePositions;
+		}
+
+		@Override
+		public synchronized String toString() {
+			if (moves == 0) {
+				return "no moves";
+			}
+			long[] sorted = Arrays.copyOf(times, moves);
+			Arrays.sort(sorted);
+			long p99 = sorted[Math.min(moves - 1, (int) Math.ceil(PERCENTILE * moves) - 1)];
+			return String.format("%d moves, average %.3f ms, p99 %.3f ms, max %.3f ms, "
+					+ "%.0f positions/s", moves, totalTime / NANOS_PER_MILLI / moves,
+					p99 / NANOS_PER_MILLI, sorted[moves - 1] / NANOS_PER_MILLI,
+					positions * NANOS_PER_SECOND / Math.max(1, totalTime));
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package testing;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.TranspositionTable;
+
+public class TranspositionTableTest {
+
+	public static final int SIZE_BITS = 4;
+	public static final long KEY = 0x123456789ABCDEFL;
+	// Maps to the same entry as KEY
+	public static final long OTHER_KEY = KEY + (1L << 40);
+	public static final int SCORE = -1234;
+	public static final int MOVE = 7;
+
+	private TranspositionTable table;
+
+	/**
+	 * Setup to test a small transposition table.
+	 */
+	@Before
+	public void setUp() {
+		table = new TranspositionTable(SIZE_BITS);
+	}
+
+	/**
+	 * Test that a stored entry is found with all its fields.
+	 */
+	@Test
+	public void testStoreAndProbe() {
+		assertEquals(TranspositionTable.MISS, table.probe(KEY));
+		table.store(KEY, 3, TranspositionTable.LOWER_BOUND, SCORE, MOVE);
+		long entry = table.probe(KEY);
+		assertEquals(SCORE, TranspositionTable.getScore(entry));
+		assertEquals(MOVE, TranspositionTable.getMove(entry));
+		assertEquals(3, TranspositionTable.getDepth(entry));
+		assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.getFlag(entry));
+		assertEquals(TranspositionTable.MISS, table.probe(OTHER_KEY));
+		table.store(KEY, 4, TranspositionTable.EXACT, 0, -1);
+		assertEquals(MOVE, TranspositionTable.getMove(table.probe(KEY)));
+	}
+
+	/**
+	 * Test that deeper entries of the current search are kept and old entries replaced.
+	 */
+	@Test
+	public void testReplacement() {
+		table.store(KEY, 5, TranspositionTable.EXACT, SCORE, MOVE);
+		table.store(OTHER_KEY, 2, TranspositionTable.EXACT, 0, -1);
+		assertEquals(SCORE, TranspositionTable.getScore(table.probe(KEY)));
+		table.store(OTHER_KEY, 6, TranspositionTable.EXACT, 0, -1);
+		assertEquals(TranspositionTable.MISS, table.probe(KEY));
+		table.newSearch();
+		table.store(KEY, 1, TranspositionTable.UPPER_BOUND, SCORE, MOVE);
+		assertEquals(1, TranspositionTable.getDepth(table.probe(KEY)));
+		table.clear();
+		assertEquals(TranspositionTable.MISS, table.probe(KEY));
+	}
+}
@@ -0,0 +1,95 @@
+package testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.Board;
+import model.WinningLines;
+
+public class WinningLinesTest {
+
+	public static final int DIM = Board.DEFAULT_DIM;
+	public static final int WIN = Board.DEFAULT_WIN;
+	// 16 per axis, 24 plane diagonals and 4 space diagonals on a 4x4x4 board
+	public static final int DEFAULT_LINES = 76;
+	public static final int CORNER_LINES = 7;
+
+	private WinningLines lines;
+
+	/**
+	 * Setup to test the winning lines of the default board.
+	 */
+	@Before
+	public void setUp() {
+		lines = WinningLines.forGeometry(DIM, DIM, DIM, WIN);
+	}
+
+	/**
+	 * Test the number of lines of the default board.
+	 */
+	@Test
+	public void testLineCount() {
+		assertEquals(DEFAULT_LINES, lines.lineCount);
+	}
+
+	/**
+	 * Test that the index is shared by all boards of a geometry.
+	 */
+	@Test
+	public void testShared() {
+		assertTrue(lines == WinningLines.forGeometry(DIM, DIM, DIM, WIN));
+	}
+
+	/**
+	 * Test that no index is created for unlimited height.
+	 */
+	@Test
+	public void testUnlimited() {
+		assertNull(WinningLines.forGeometry(DIM, DIM, Board.UNLIMITED_Z, WIN));
+	}
+
+	/**
+	 * Test that the lines of a cell contain this cell.
+	 */
+	@Test
+	public void testCellLines() {
+		assertEquals(CORNER_LINES, lines.endLineOf(0) - lines.firstLineOf(0));
+		for (int cell = 0; cell < DIM * DIM * DIM; cell++) {
+			for (int i = lines.firstLineOf(cell); i < lines.endLineOf(cell); i++) {
+				boolean found = false;
+				for (int j = 0; j < WIN; j++) {
+					found = found || lines.getCell(lines.getLine(i), j) == cell;
+				}
+				assertTrue(found);
+			}
+		}
+	}
+
+	/**
+	 * Test that the bit mask of every line holds exactly its cells, in one word for the default
+	 * board and in two for a larger one, and that the largest geometries get no masks.
+	 */
+	@Test
+	public void testLineMasks() {
+		WinningLines larger = WinningLines.forGeometry(DIM + 1, DIM + 1, DIM + 1, WIN);
+		assertEquals(1, lines.maskWords);
+		assertEquals(2, larger.maskWords);
+		assertEquals(0, WinningLines.forGeometry(DIM * 2, DIM * 2, DIM * 2, WIN).maskWords);
+		for (WinningLines geometry : new WinningLines[] {lines, larger}) {
+			for (int line = 0; line < geometry.lineCount; line++) {
+				long[] mask = new long[geometry.maskWords];
+				for (int i = 0; i < WIN; i++) {
+					int cell = geometry.getCell(line, i);
+					mask[cell >>> 6] |= 1L << cell;
+				}
+				for (int word = 0; word < geometry.maskWords; word++) {
+					assertEquals(mask[word], geometry.getLineMask(line, word));
+				}
+			}
+		}
+	}
+}
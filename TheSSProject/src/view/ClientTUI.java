@@ -306,7 +306,11 @@ public class ClientTUI extends Observable {
 				+ "The following are implemented:\n"
 				+ " - Randi for a player with Random strategy\n"
 				+ " - Trams for a player with Smart strategy (takes winning move if "
-				+ "possible, else a random move)\n");
+				+ "possible, else a random move)\n"
+				+ " - Alphi for a player with Alpha-beta strategy (searches ahead for the "
+				+ "best move)\n"
+				+ " - Monty for a player with Monte Carlo strategy (plays random games, for "
+				+ "large boards)\n");
 		while (true) {
 			if (scanny.hasNextLine()) {
 				strategy = scanny.nextLine();
@@ -315,6 +319,10 @@ public class ClientTUI extends Observable {
 						return "Randi";
 					case "Trams":
 						return "Trams";
+					case "Alphi":
+						return "Alphi";
+					case "Monty":
+						return "Monty";
 					default:
 						errorMessage(MessageType.INVALID_STRATEGY);
 						break; 